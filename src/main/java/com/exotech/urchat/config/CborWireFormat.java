@@ -0,0 +1,161 @@
+package com.exotech.urchat.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Lets a STOMP session opt into CBOR instead of JSON by sending x-wire-format:cbor on CONNECT.
+// Outbound JSON payloads are re-encoded per CBOR session, with LocalDateTime fields as epoch
+// millis; inbound frames sent with content-type application/cbor are decoded by the extra
+// converter. CBOR needs binary WebSocket frames, so SockJS sessions always stay on JSON.
+@Slf4j
+@Component
+public class CborWireFormat implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    public static final String FORMAT_HEADER = "x-wire-format";
+    public static final String CBOR = "cbor";
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+    // Set when the connection can carry binary frames
+    static final String BINARY_FRAMES_ATTRIBUTE = "binaryFrames";
+    private static final Set<String> TIMESTAMP_FIELDS = Set.of("timestamp", "lastActivity", "deletedAt", "readAt", "joinedAt");
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory()).findAndRegisterModules();
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+    // The broker hands every subscriber the same payload array, so encode it once per broadcast
+    private final Map<byte[], byte[]> encoded = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public CborWireFormat(ObjectMapper jsonMapper) {
+        this.jsonMapper = jsonMapper;
+    }
+
+    // Called for CONNECT frames by WebSocketAuthInterceptor
+    public void negotiate(StompHeaderAccessor accessor) {
+        if (!CBOR.equalsIgnoreCase(accessor.getFirstNativeHeader(FORMAT_HEADER))) {
+            return;
+        }
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes != null && Boolean.TRUE.equals(attributes.get(BINARY_FRAMES_ATTRIBUTE))) {
+            cborSessions.add(accessor.getSessionId());
+        } else {
+            log.debug("Session {} asked for CBOR over SockJS, keeping JSON", accessor.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        cborSessions.remove(event.getSessionId());
+    }
+
+    public MessageConverter inboundConverter() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(APPLICATION_CBOR);
+        converter.setObjectMapper(cborMapper);
+        // Never claim frames that carry no content-type; those are JSON
+        converter.setStrictContentTypeMatch(true);
+        return converter;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                session.getAttributes().put(BINARY_FRAMES_ATTRIBUTE, !(session instanceof SockJsSession));
+                super.afterConnectionEstablished(session);
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, SimpMessageHeaderAccessor.class);
+        if (accessor == null
+                || accessor.getMessageType() != SimpMessageType.MESSAGE
+                || !cborSessions.contains(accessor.getSessionId())
+                || !(message.getPayload() instanceof byte[] json)
+                || accessor.getContentType() == null
+                || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(accessor.getContentType())) {
+            return message;
+        }
+
+        try {
+            byte[] cbor = encoded.get(json);
+            if (cbor == null) {
+                cbor = toCbor(json);
+                encoded.put(json, cbor);
+            }
+            SimpMessageHeaderAccessor copy = SimpMessageHeaderAccessor.wrap(message);
+            // Spring only writes binary WebSocket frames for octet-stream; the format header says what it is
+            copy.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+            copy.setNativeHeader(FORMAT_HEADER, CBOR);
+            return MessageBuilder.createMessage(cbor, copy.getMessageHeaders());
+        } catch (IOException e) {
+            log.warn("⚠️ Failed to encode CBOR for session {}, sending JSON: {}", accessor.getSessionId(), e.getMessage());
+            return message;
+        }
+    }
+
+    public byte[] toCbor(byte[] json) throws IOException {
+        JsonNode tree = jsonMapper.readTree(json);
+        convertTimestamps(tree);
+        return cborMapper.writeValueAsBytes(tree);
+    }
+
+    private void convertTimestamps(JsonNode node) {
+        if (node instanceof ObjectNode object) {
+            Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (TIMESTAMP_FIELDS.contains(field.getKey()) && field.getValue().isTextual()) {
+                    try {
+                        // Entity timestamps are LocalDateTime.now() / @CreationTimestamp, i.e. wall-clock
+                        // time in the JVM's zone; JSON sends them as that zone-less string
+                        long epochMillis = LocalDateTime.parse(field.getValue().asText())
+                                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                        field.setValue(LongNode.valueOf(epochMillis));
+                    } catch (DateTimeParseException ignored) {
+                        // Not a LocalDateTime; leave it as sent
+                    }
+                } else {
+                    convertTimestamps(field.getValue());
+                }
+            }
+        } else if (node.isArray()) {
+            node.forEach(this::convertTimestamps);
+        }
+    }
+}
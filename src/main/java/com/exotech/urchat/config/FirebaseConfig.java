@@ -3,8 +3,12 @@ package com.exotech.urchat.config;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
+import com.exotech.urchat.service.FirebasePushGateway;
+import com.exotech.urchat.service.PushGateway;
+import com.exotech.urchat.service.StubPushGateway;
 import com.google.firebase.messaging.FirebaseMessaging;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -17,6 +21,7 @@ import java.nio.charset.StandardCharsets;
 public class FirebaseConfig {
 
     @Bean
+    @ConditionalOnProperty(name = "app.fcm.enabled", havingValue = "true", matchIfMissing = true)
     public FirebaseApp firebaseApp() throws Exception {
         String firebaseConfig = System.getenv("FIREBASE_CONFIG");
 
@@ -45,7 +50,21 @@ public class FirebaseConfig {
     }
 
     @Bean
+    @ConditionalOnProperty(name = "app.fcm.enabled", havingValue = "true", matchIfMissing = true)
     public FirebaseMessaging firebaseMessaging(FirebaseApp firebaseApp) {
         return FirebaseMessaging.getInstance(firebaseApp);
     }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.fcm.enabled", havingValue = "true", matchIfMissing = true)
+    public PushGateway firebasePushGateway(FirebaseMessaging firebaseMessaging) {
+        return new FirebasePushGateway(firebaseMessaging);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.fcm.enabled", havingValue = "false")
+    public PushGateway stubPushGateway() {
+        log.warn("⚠️ FCM disabled, push notifications go to the stub gateway");
+        return new StubPushGateway();
+    }
 }
@@ -0,0 +1,136 @@
+package com.exotech.urchat.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Coalesces the STOMP frames going to one session within a short window into a single
+// WebSocket message (frames are NUL-terminated, so clients split them as usual).
+// Only for sessions that asked for it at CONNECT; see WebSocketAuthInterceptor.
+@Slf4j
+@Component
+public class FrameBatchingDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    // Client CONNECT header asking for batching, echoed on CONNECTED with the window in ms
+    public static final String BATCH_HEADER = "x-batch-frames";
+    // Session attribute holding the negotiated window
+    public static final String WINDOW_ATTRIBUTE = "frameBatchWindowMs";
+
+    @Value("${app.websocket.batching.max-batch-chars:65536}")
+    private int maxBatchChars;
+
+    @Value("${app.websocket.batching.flush-threads:2}")
+    private int flushThreads;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(flushThreads, runnable -> {
+            Thread thread = new Thread(runnable, "ws-batch-flush-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(new BatchingSession(session));
+            }
+        };
+    }
+
+    private class BatchingSession extends WebSocketSessionDecorator {
+
+        private final StringBuilder pending = new StringBuilder();
+        private ScheduledFuture<?> flushTask;
+
+        BatchingSession(WebSocketSession session) {
+            super(session);
+        }
+
+        @Override
+        public synchronized void sendMessage(WebSocketMessage<?> message) throws IOException {
+            Object window = getAttributes().get(WINDOW_ATTRIBUTE);
+            if (!(window instanceof Long windowMs) || !(message instanceof TextMessage text)) {
+                flush();
+                super.sendMessage(message);
+                return;
+            }
+
+            String frame = text.getPayload();
+            if (frame.startsWith("CONNECTED\n")) {
+                // Tell the client its request was accepted
+                super.sendMessage(new TextMessage("CONNECTED\n" + BATCH_HEADER + ":" + windowMs + "\n"
+                        + frame.substring("CONNECTED\n".length())));
+                return;
+            }
+
+            pending.append(frame);
+            if (pending.length() >= maxBatchChars) {
+                flush();
+            } else if (flushTask == null) {
+                flushTask = scheduler.schedule(this::scheduledFlush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @Override
+        public synchronized void close(CloseStatus status) throws IOException {
+            try {
+                flush();
+            } catch (IOException e) {
+                log.debug("Dropped batched frames for closing session {}: {}", getId(), e.getMessage());
+            }
+            super.close(status);
+        }
+
+        private synchronized void scheduledFlush() {
+            flushTask = null;
+            try {
+                flush();
+            } catch (IOException e) {
+                log.warn("⚠️ Failed to flush batched frames for session {}: {}", getId(), e.getMessage());
+            }
+        }
+
+        private void flush() throws IOException {
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+            if (pending.isEmpty() || !isOpen()) {
+                pending.setLength(0);
+                return;
+            }
+            String batch = pending.toString();
+            pending.setLength(0);
+            super.sendMessage(new TextMessage(batch));
+        }
+    }
+}
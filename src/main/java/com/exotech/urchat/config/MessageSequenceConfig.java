@@ -0,0 +1,34 @@
+package com.exotech.urchat.config;
+
+import com.exotech.urchat.model.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Message ids used to come from an IDENTITY column. ddl-auto creates messages_seq
+// starting at 1, so move it past the existing ids before anything is inserted.
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class MessageSequenceConfig {
+
+    private final JdbcTemplate jdbcTemplate;
+    // Schema update runs while the EntityManagerFactory is built, so the sequence exists by now
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void alignMessageSequence() {
+        try {
+            Long value = jdbcTemplate.queryForObject(
+                    "SELECT setval('messages_seq', GREATEST((SELECT last_value FROM messages_seq), " +
+                            "(SELECT COALESCE(MAX(message_id), 0) FROM messages) + ?))",
+                    Long.class, Message.ID_ALLOCATION_SIZE);
+            log.info("✅ messages_seq aligned at {}", value);
+        } catch (Exception e) {
+            log.error("❌ Failed to align messages_seq: {}", e.getMessage());
+        }
+    }
+}
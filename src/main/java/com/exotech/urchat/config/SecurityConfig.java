@@ -48,7 +48,9 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
-                        .requestMatchers("/auth/**", "/ws/**", "/topic/**", "/queue/**", "/admin/**").permitAll()
+                        // Lists every connected user and session id, so it needs more than the admin URL
+                        .requestMatchers("/admin/*/websocket/**").hasRole("ADMIN")
+                        .requestMatchers("/auth/**", "/ws/**", "/ws-native/**", "/topic/**", "/queue/**", "/admin/**").permitAll()
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session
@@ -0,0 +1,261 @@
+package com.exotech.urchat.config;
+
+import com.exotech.urchat.dto.webSocketDTOs.SessionQueueStats;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+// Gives every WebSocket session its own bounded outbound queue, written by a virtual
+// thread, so one client on a bad network can't pile up frames without limit.
+// Over the buffer limit, stale non-essential frames are dropped first: queued typing
+// frames, and chat list updates that a newer one replaces. Sessions that stay over the
+// limit, or whose current write takes longer than the send time limit, are closed.
+@Slf4j
+@Component
+public class SlowConsumerGuard implements WebSocketHandlerDecoratorFactory {
+
+    private static final String CHAT_LIST_UPDATE = "/queue/chats/update";
+    private static final String TYPING = "/typing";
+
+    @Value("${app.websocket.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs;
+
+    @Value("${app.websocket.send-buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    @Value("${app.websocket.slow-consumer-grace-ms:5000}")
+    private long graceMs;
+
+    private final Map<String, GuardedSession> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService writers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ws-writer-", 0).factory());
+
+    @PreDestroy
+    public void stop() {
+        writers.shutdown();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                GuardedSession guarded = new GuardedSession(session);
+                sessions.put(session.getId(), guarded);
+                super.afterConnectionEstablished(guarded);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public List<SessionQueueStats> getQueueStats() {
+        return sessions.values().stream()
+                .map(GuardedSession::stats)
+                .sorted(Comparator.comparingLong(SessionQueueStats::getQueuedBytes).reversed())
+                .toList();
+    }
+
+    // Evicts sessions stuck on one write or over the buffer limit for longer than the grace period
+    @Scheduled(fixedDelayString = "${app.websocket.slow-consumer-check-ms:1000}")
+    public void evictSlowConsumers() {
+        long now = System.currentTimeMillis();
+        for (GuardedSession session : sessions.values()) {
+            String reason = session.evictionReason(now);
+            if (reason != null) {
+                log.warn("⚠️ Closing slow WebSocket session {} ({}): {}", session.getId(), session.user(), reason);
+                sessions.remove(session.getId());
+                session.evict();
+            }
+        }
+    }
+
+    // TYPING or CHAT_LIST_UPDATE for frames that may be dropped, null for everything else
+    static String kindOf(WebSocketMessage<?> message) {
+        String destination = destinationOf(message);
+        if (destination == null) {
+            return null;
+        }
+        if (destination.endsWith(TYPING)) {
+            return TYPING;
+        }
+        return destination.endsWith(CHAT_LIST_UPDATE) ? CHAT_LIST_UPDATE : null;
+    }
+
+    private static String destinationOf(WebSocketMessage<?> message) {
+        String headers;
+        if (message instanceof TextMessage text) {
+            String payload = text.getPayload();
+            // A batch of several frames is never treated as droppable
+            if (payload.indexOf('\0') < payload.length() - 1) {
+                return null;
+            }
+            headers = payload.substring(0, Math.min(payload.length(), 512));
+        } else if (message instanceof BinaryMessage binary) {
+            ByteBuffer buffer = binary.getPayload().duplicate();
+            byte[] head = new byte[Math.min(buffer.remaining(), 512)];
+            buffer.get(head);
+            headers = new String(head, StandardCharsets.UTF_8);
+        } else {
+            return null;
+        }
+        int start = headers.indexOf("\ndestination:");
+        if (start < 0) {
+            return null;
+        }
+        start += "\ndestination:".length();
+        int end = headers.indexOf('\n', start);
+        return end < 0 ? null : headers.substring(start, end);
+    }
+
+    private class GuardedSession extends WebSocketSessionDecorator {
+
+        private final Deque<QueuedFrame> queue = new ArrayDeque<>();
+        private long queuedBytes;
+        private long dropped;
+        private boolean writing;
+        private volatile long writeStartedAt;
+        private long overLimitSince;
+
+        GuardedSession(WebSocketSession session) {
+            super(session);
+        }
+
+        // Never blocks: the frame is queued and written by this session's writer
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            if (!isOpen()) {
+                return;
+            }
+            boolean startWriter;
+            synchronized (this) {
+                String kind = kindOf(message);
+                if (CHAT_LIST_UPDATE.equals(kind)) {
+                    // The newest chat list replaces any still waiting to go out
+                    removeQueued(frame -> CHAT_LIST_UPDATE.equals(frame.kind()));
+                }
+                queue.addLast(new QueuedFrame(message, kind));
+                queuedBytes += message.getPayloadLength();
+
+                if (queuedBytes > bufferSizeLimit) {
+                    removeQueued(frame -> TYPING.equals(frame.kind()));
+                }
+                if (queuedBytes > bufferSizeLimit) {
+                    if (overLimitSince == 0) {
+                        overLimitSince = System.currentTimeMillis();
+                    }
+                } else {
+                    overLimitSince = 0;
+                }
+
+                startWriter = !writing;
+                writing = true;
+            }
+            if (startWriter) {
+                writers.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                QueuedFrame frame;
+                synchronized (this) {
+                    frame = queue.pollFirst();
+                    if (frame == null) {
+                        writing = false;
+                        writeStartedAt = 0;
+                        return;
+                    }
+                    queuedBytes -= frame.message().getPayloadLength();
+                    if (queuedBytes <= bufferSizeLimit) {
+                        overLimitSince = 0;
+                    }
+                }
+                try {
+                    writeStartedAt = System.currentTimeMillis();
+                    getDelegate().sendMessage(frame.message());
+                } catch (Exception e) {
+                    log.debug("Failed to write to WebSocket session {}: {}", getId(), e.getMessage());
+                }
+            }
+        }
+
+        // Only frames that are still waiting; the one being written is already out of the queue
+        private void removeQueued(Predicate<QueuedFrame> stale) {
+            Iterator<QueuedFrame> frames = queue.iterator();
+            while (frames.hasNext()) {
+                QueuedFrame frame = frames.next();
+                if (stale.test(frame)) {
+                    frames.remove();
+                    queuedBytes -= frame.message().getPayloadLength();
+                    dropped++;
+                }
+            }
+        }
+
+        synchronized String evictionReason(long now) {
+            long startedAt = writeStartedAt;
+            if (startedAt > 0 && now - startedAt > sendTimeLimitMs) {
+                return "write blocked for " + (now - startedAt) + "ms";
+            }
+            if (overLimitSince > 0 && now - overLimitSince > graceMs) {
+                return queuedBytes + " bytes queued for over " + graceMs + "ms";
+            }
+            return null;
+        }
+
+        synchronized SessionQueueStats stats() {
+            long startedAt = writeStartedAt;
+            return new SessionQueueStats(getId(), user(), queue.size(), queuedBytes, dropped,
+                    startedAt > 0 ? System.currentTimeMillis() - startedAt : 0);
+        }
+
+        String user() {
+            return getPrincipal() != null ? getPrincipal().getName() : null;
+        }
+
+        void evict() {
+            synchronized (this) {
+                queue.clear();
+                queuedBytes = 0;
+            }
+            try {
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("Error closing WebSocket session {}: {}", getId(), e.getMessage());
+            }
+        }
+    }
+
+    private record QueuedFrame(WebSocketMessage<?> message, String kind) {
+    }
+}
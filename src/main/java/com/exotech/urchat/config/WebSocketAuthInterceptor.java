@@ -3,6 +3,7 @@ package com.exotech.urchat.config;
 import com.exotech.urchat.security.JwtUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
@@ -21,6 +22,13 @@ import java.util.List;
 public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
     private final JwtUtil jwtUtil;
+    private final CborWireFormat cborWireFormat;
+
+    @Value("${app.websocket.batching.enabled:true}")
+    private boolean batchingEnabled;
+
+    @Value("${app.websocket.batching.window-ms:20}")
+    private long batchWindowMs;
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -44,6 +52,8 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
 //                        SecurityContextHolder.getContext().setAuthentication(auth);
                         accessor.setUser(auth);
+                        negotiateFrameBatching(accessor);
+                        cborWireFormat.negotiate(accessor);
 
                         log.info("WebSocket authenticated for user: {}", username);
                     } else {
@@ -58,4 +68,13 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
         }
         return message;
     }
+
+    // Opt-in: the client sends x-batch-frames:true and must be able to split several frames out of one message
+    private void negotiateFrameBatching(StompHeaderAccessor accessor) {
+        if (batchingEnabled
+                && "true".equalsIgnoreCase(accessor.getFirstNativeHeader(FrameBatchingDecoratorFactory.BATCH_HEADER))
+                && accessor.getSessionAttributes() != null) {
+            accessor.getSessionAttributes().put(FrameBatchingDecoratorFactory.WINDOW_ATTRIBUTE, batchWindowMs);
+        }
+    }
 }
@@ -1,36 +1,187 @@
 package com.exotech.urchat.config;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
+import java.util.List;
+
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    public static final String EXECUTOR_PLATFORM = "platform";
+    public static final String EXECUTOR_VIRTUAL = "virtual";
+    public static final String BROKER_SIMPLE = "simple";
+    public static final String BROKER_RELAY = "relay";
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
     private final WebSocketAuthInterceptor authInterceptor;
+    private final FrameBatchingDecoratorFactory frameBatchingDecoratorFactory;
+    private final CborWireFormat cborWireFormat;
+    private final SlowConsumerGuard slowConsumerGuard;
+
+    // "platform" keeps a bounded thread pool per channel, "virtual" runs every frame on its own virtual thread
+    @Value("${app.websocket.executor:platform}")
+    private String executorMode;
+
+    @Value("${app.websocket.inbound.pool-size:16}")
+    private int inboundPoolSize;
+
+    @Value("${app.websocket.outbound.pool-size:16}")
+    private int outboundPoolSize;
+
+    @Value("${app.websocket.queue-capacity:10000}")
+    private int queueCapacity;
+
+    // "simple" keeps subscriptions in this JVM; "relay" forwards them to an external STOMP broker
+    // (ActiveMQ/Artemis, or RabbitMQ with the STOMP plugin) so several instances can share them
+    @Value("${app.websocket.broker:simple}")
+    private String brokerMode;
+
+    @Value("${app.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${app.websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${app.websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${app.websocket.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    @Value("${app.websocket.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs;
+
+    @Value("${app.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${app.websocket.native.compression:true}")
+    private boolean nativeCompression;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config){
-        config.enableSimpleBroker("/topic", "/queue");
+        if (BROKER_RELAY.equalsIgnoreCase(brokerMode)) {
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    // Sessions are spread over nodes: share who is connected where, and hand
+                    // /user destinations this node can't resolve to the node that can
+                    .setUserRegistryBroadcast("/topic/user-registry")
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination");
+            if (!relayVirtualHost.isBlank()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            log.info("✅ Using STOMP broker relay at {}:{}", relayHost, relayPort);
+        } else if (BROKER_SIMPLE.equalsIgnoreCase(brokerMode)) {
+            config.enableSimpleBroker("/topic", "/queue");
+        } else {
+            throw new IllegalStateException("❌ Unknown app.websocket.broker: " + brokerMode);
+        }
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+        // Frames to one session leave in the order they were published, whatever the executor
+        config.setPreservePublishOrder(true);
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Frames from one session are handled one after another, in arrival order
+        registry.setPreserveReceiveOrder(true);
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+        // Plain WebSocket for clients that don't need the SockJS fallbacks: no SockJS framing,
+        // permessage-deflate when the client offers it, and binary frames (CBOR) possible
+        registry.addEndpoint("/ws-native")
+                .setHandshakeHandler(nativeHandshakeHandler())
+                .setAllowedOriginPatterns("*");
+    }
+
+    private DefaultHandshakeHandler nativeHandshakeHandler() {
+        return new DefaultHandshakeHandler() {
+            @Override
+            protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                                                                         List<WebSocketExtension> requestedExtensions,
+                                                                         List<WebSocketExtension> supportedExtensions) {
+                List<WebSocketExtension> extensions =
+                        super.filterRequestedExtensions(request, requestedExtensions, supportedExtensions);
+                if (nativeCompression) {
+                    return extensions;
+                }
+                return extensions.stream()
+                        .filter(extension -> !PERMESSAGE_DEFLATE.equals(extension.getName()))
+                        .toList();
+            }
+        };
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Outgoing writes pass batching, then the per-session bounded queue, then the container.
+        // cborWireFormat is added last so it wraps the others and still sees the container's session type
+        registration.addDecoratorFactory(frameBatchingDecoratorFactory, slowConsumerGuard, cborWireFormat);
+        // Spring applies these through ConcurrentWebSocketSessionDecorator, which wraps the session
+        // outermost, in front of all three decorators above. A send through SlowConsumerGuard only
+        // queues the frame and returns, so these rarely trip; the guard enforces the same limits
+        // on the actual writes to the container.
+        registration.setSendTimeLimit((int) sendTimeLimitMs);
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // For clients that send application/cbor; the JSON converters are still registered
+        messageConverters.add(cborWireFormat.inboundConverter());
+        return true;
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
         registration.interceptors(authInterceptor);
+        configureExecutor(registration, "inbound", inboundPoolSize);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(cborWireFormat);
+        configureExecutor(registration, "outbound", outboundPoolSize);
+    }
+
+    private void configureExecutor(ChannelRegistration registration, String channel, int poolSize) {
+        if (EXECUTOR_VIRTUAL.equalsIgnoreCase(executorMode)) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-" + channel + "-"));
+            log.info("✅ WebSocket {} channel running on virtual threads", channel);
+        } else if (EXECUTOR_PLATFORM.equalsIgnoreCase(executorMode)) {
+            registration.taskExecutor()
+                    .corePoolSize(poolSize)
+                    .maxPoolSize(poolSize)
+                    .queueCapacity(queueCapacity);
+        } else {
+            throw new IllegalStateException("❌ Unknown app.websocket.executor: " + executorMode);
+        }
     }
-}
\ No newline at end of file
+}
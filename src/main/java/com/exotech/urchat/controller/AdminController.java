@@ -1,14 +1,18 @@
 package com.exotech.urchat.controller;
 
+import com.exotech.urchat.config.SlowConsumerGuard;
 import com.exotech.urchat.dto.chatDTOs.ChatRoomDTO;
 import com.exotech.urchat.dto.messageDTOs.MessageDTO;
 import com.exotech.urchat.dto.userDTOs.UserDTO;
+import com.exotech.urchat.dto.webSocketDTOs.SessionQueueStats;
 import com.exotech.urchat.model.ChatRoom;
 import com.exotech.urchat.model.Message;
 import com.exotech.urchat.model.User;
 import com.exotech.urchat.repository.ChatRoomRepo;
 import com.exotech.urchat.repository.MessageRepo;
 import com.exotech.urchat.repository.UserRepo;
+import com.exotech.urchat.service.ChatInboxService;
+import com.exotech.urchat.service.ChatMembershipCache;
 import com.exotech.urchat.service.ChatService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -29,6 +33,9 @@ public class AdminController {
     private final UserRepo userRepo;
     private final ChatRoomRepo chatRoomRepo;
     private final MessageRepo messageRepo;
+    private final ChatMembershipCache membershipCache;
+    private final ChatInboxService chatInboxService;
+    private final SlowConsumerGuard slowConsumerGuard;
 
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getDashboardStats() {
@@ -55,6 +62,12 @@ public class AdminController {
         }
     }
 
+    // Outbound queue depth per WebSocket session, deepest first
+    @GetMapping("/websocket/sessions")
+    public ResponseEntity<List<SessionQueueStats>> getWebSocketSessions() {
+        return ResponseEntity.ok(slowConsumerGuard.getQueueStats());
+    }
+
     @GetMapping("/tables/users")
     public ResponseEntity<List<Map<String, String>>> getAllUsersTable() {
         try {
@@ -146,7 +159,12 @@ public class AdminController {
             User user = userRepo.findById(username)
                     .orElseThrow(() -> new RuntimeException("User not found: " + username));
 
-            user.getChatRooms().forEach(chat -> chat.getParticipants().remove(user));
+            user.getChatRooms().forEach(chat -> {
+                chat.getParticipants().remove(user);
+                membershipCache.invalidate(chat.getChatId());
+                chatInboxService.syncChat(chat);
+            });
+            chatInboxService.removeUser(username);
             user.getChatRoomInvitations().forEach(chat -> chat.getPendingInvitations().remove(user));
 
             chatRoomRepo.findAll().forEach(chat -> {
@@ -176,6 +194,8 @@ public class AdminController {
             ChatRoom chatRoom = chatRoomRepo.findById(chatId)
                     .orElseThrow(() -> new RuntimeException("Chat room not found: " + chatId));
             chatRoomRepo.delete(chatRoom);
+            membershipCache.invalidate(chatId);
+            chatInboxService.removeChat(chatId);
 
             Map<String, String> response = new HashMap<>();
             response.put("status", "success");
@@ -224,6 +244,7 @@ public class AdminController {
             if (updates.containsKey("fcmToken")) user.setFcmToken(updates.get("fcmToken"));
 
             userRepo.save(user);
+            chatInboxService.updateUserProfile(user);
 
             Map<String, String> response = new HashMap<>();
             response.put("status", "success");
@@ -252,6 +273,9 @@ public class AdminController {
             if (updates.containsKey("isDarkTheme")) chatRoom.setIsDarkTheme(Boolean.parseBoolean(updates.get("isDarkTheme")));
 
             chatRoomRepo.save(chatRoom);
+            membershipCache.invalidate(chatId);
+            chatInboxService.syncChat(chatRoom);
+            chatInboxService.updateSummary(chatId, chatRoom.getLastMessage(), chatRoom.getLastActivity());
 
             Map<String, String> response = new HashMap<>();
             response.put("status", "success");
@@ -301,6 +325,8 @@ public class AdminController {
 
             chatRoom.getParticipants().remove(user);
             chatRoomRepo.save(chatRoom);
+            membershipCache.invalidate(chatId);
+            chatInboxService.syncChat(chatRoom);
 
             Map<String, String> response = new HashMap<>();
             response.put("status", "success");
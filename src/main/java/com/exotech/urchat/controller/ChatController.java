@@ -8,9 +8,11 @@ import com.exotech.urchat.service.ChatService;
 import com.exotech.urchat.service.GroupChatService;
 import com.exotech.urchat.service.MessageCleanupService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -51,22 +53,22 @@ public class ChatController {
     }
 
     @GetMapping("/{chatId}/messages")
-    public ResponseEntity<List<MessageDTO>> getChatMessages(
+    public ResponseEntity<StreamingResponseBody> getChatMessages(
             @AuthenticationPrincipal String username,
             @PathVariable String chatId) {
-        List<MessageDTO> messages = chatService.getChatMessages(chatId, username);
-//        List<MessageDTO> messages = chatService.getPaginatedMessages(chatId, 0, 50, username);
-        System.out.println("✅ Loaded " + messages.size() + " messages for chat: " + chatId);
-        return ResponseEntity.ok(messages);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(chatService.streamChatMessages(chatId, username));
     }
 
     @GetMapping("/{chatId}/messages/paginated")
     public ResponseEntity<List<MessageDTO>> getPaginatedMessages(
             @AuthenticationPrincipal String username,
             @PathVariable String chatId,
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
             @RequestParam(defaultValue = "20") int size) {
-        List<MessageDTO> messages = chatService.getPaginatedMessages(chatId, page, size, username);
+        List<MessageDTO> messages = chatService.getPaginatedMessages(chatId, before, after, size, username);
         return ResponseEntity.ok(messages);
     }
 
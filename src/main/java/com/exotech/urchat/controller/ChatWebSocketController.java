@@ -7,6 +7,7 @@ import com.exotech.urchat.service.ChatService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
@@ -26,13 +27,14 @@ public class ChatWebSocketController {
     @SubscribeMapping("/user/queue/chat/{chatId}")
     public ChatHistoryResponse getInitialChatData(
             @DestinationVariable String chatId,
+            @Header(name = "before", required = false) Long before,
             Principal principal) {
 
         String username = principal.getName();
         log.info("User {} requesting initial data for chat {}", username, chatId);
         try {
 //            List<MessageDTO> messages = chatService.getChatMessages(chatId, username);
-            var messages = chatService.getPaginatedMessages(chatId, 0, 20, username);
+            var messages = chatService.getPaginatedMessages(chatId, before, null, 20, username);
             return new ChatHistoryResponse(chatId, messages, true);
         } catch (Exception e) {
             log.error("Error getting chat history for user {}: {}", username, e.getMessage());
@@ -1,5 +1,6 @@
 package com.exotech.urchat.controller;
 
+import com.exotech.urchat.service.MessageNotificationEvent;
 import com.exotech.urchat.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -19,13 +20,16 @@ public class Hello {
     @PostMapping("/send-test-notification")
     public ResponseEntity<String> sendTestNotification(@AuthenticationPrincipal String username) {
         try {
-            notificationService.sendMessageNotification(
+            notificationService.sendMessageNotification(new MessageNotificationEvent(
                     "test-chat-id",
                     username,
                     "This is a test notification from URChat!",
-                    "Test Chat",
-                    false
-            );
+                    username,
+                    false,
+                    "💬",
+                    "#2196F3",
+                    null
+            ));
             return ResponseEntity.ok("Test notification sent successfully");
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Failed to send test notification: " + e.getMessage());
@@ -7,13 +7,20 @@ import com.exotech.urchat.dto.chatDTOs.ChatRoomDTO;
 import com.exotech.urchat.dto.webSocketDTOs.*;
 import com.exotech.urchat.model.ChatRoom;
 import com.exotech.urchat.model.Message;
+import com.exotech.urchat.service.ChatEvent;
+import com.exotech.urchat.service.ChatEventBus;
+import com.exotech.urchat.service.ChatLaneExecutor;
 import com.exotech.urchat.service.ChatService;
+import com.exotech.urchat.service.MessageIngestService;
+import com.exotech.urchat.service.PresenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -29,6 +36,11 @@ public class WebSocketController {
     private final SimpMessagingTemplate messagingTemplate;
     private final ChatService chatService;
     private final MessageDTOConvertor messageDTOConvertor;
+    private final PresenceService presenceService;
+    private final MessageIngestService messageIngestService;
+    // send, delete-message and delete-chat run on a per-chat serial lane so they never reorder within a chat
+    private final ChatLaneExecutor chatLanes;
+    private final ChatEventBus eventBus;
 
 
 //    private final Map<String, String> userCurrentChats = new ConcurrentHashMap<>();
@@ -71,15 +83,31 @@ public class WebSocketController {
         System.out.println("Send message is called");
 
         String username = principal.getName();
+        chatLanes.execute(chatId, () -> processSend(chatId, messageRequest, username));
+    }
+
+    private void processSend(String chatId, ChatMessageRequest messageRequest, String username) {
         log.info("User {} sending message to chat {}: {}", username, chatId, messageRequest.getContent());
 
+        String clientMessageId = messageRequest.getClientMessageId();
+        Long duplicateId = messageIngestService.findDuplicate(username, clientMessageId);
+        if (duplicateId != null) {
+            // A retry of something already stored and broadcast; just ack it again
+            confirm(username, new MessageConfirmation(duplicateId, "DUPLICATE", clientMessageId));
+            return;
+        }
+
         try {
-            Message savedMessage = chatService.sendMessage(username, chatId, messageRequest.getContent());
+            Message savedMessage = messageIngestService.send(username, chatId, messageRequest.getContent(), clientMessageId);
             MessageDTO messageDTO = messageDTOConvertor.convertToMessageDTO(savedMessage, username);
 
-            messagingTemplate.convertAndSend("/topic/chat/" + chatId, messageDTO);
+            eventBus.publish(ChatEvent.builder()
+                    .type(ChatEvent.Type.MESSAGE_CREATED)
+                    .chatId(chatId)
+                    .payload(messageDTO)
+                    .build());
 
-            chatService.updateChatListsForParticipants(chatId, username);
+            chatService.publishChatListDelta(savedMessage);
 
 //            updateChatListsForParticipants(chatId, username);
 //            broadcastChatListUpdate(chatId, username);
@@ -88,8 +116,23 @@ public class WebSocketController {
 //                processedMessages.clear();
 //            }
 
+            confirm(username, new MessageConfirmation(savedMessage.getMessageId(), "SENT", clientMessageId));
+
             log.info("Message broadcasted to chat {}: {}", chatId, savedMessage.getMessageId());
 
+        } catch (DataIntegrityViolationException e) {
+            // Two copies of the same send raced past the cache; the unique key let one through
+            Long existingId = messageIngestService.resolveDuplicate(username, clientMessageId);
+            if (existingId != null) {
+                confirm(username, new MessageConfirmation(existingId, "DUPLICATE", clientMessageId));
+            } else {
+                log.error("Error sending message: {}", e.getMessage());
+                messagingTemplate.convertAndSendToUser(
+                        username,
+                        "/queue/errors",
+                        new ErrorMessage("MESSAGE_SEND_FAILED", "Failed to send message")
+                );
+            }
         } catch (Exception e) {
             log.error("Error sending message: {}", e.getMessage());
 //            processedMessages.remove(messageKey);
@@ -101,6 +144,10 @@ public class WebSocketController {
         }
     }
 
+    private void confirm(String username, MessageConfirmation confirmation) {
+        messagingTemplate.convertAndSendToUser(username, "/queue/confirmations", confirmation);
+    }
+
     @MessageMapping("/chat/{chatId}/typing")
     public void handleTyping(
             @DestinationVariable String chatId,
@@ -114,7 +161,11 @@ public class WebSocketController {
 //            userCurrentChats.remove(username);
 //        }
         TypingBroadcast broadcast = new TypingBroadcast(username, typing.isTyping());
-        messagingTemplate.convertAndSend("/topic/chat/" + chatId + "/typing", broadcast);
+        eventBus.publish(ChatEvent.builder()
+                .type(ChatEvent.Type.TYPING)
+                .chatId(chatId)
+                .payload(broadcast)
+                .build());
 
         log.debug("User {} {} in chat {}", username, typing.isTyping() ? "started typing" : "stopped typing", chatId);
     }
@@ -127,13 +178,28 @@ public class WebSocketController {
 
 //        ghm pvt limited
         String username = principal.getName();
+        chatService.markRead(chatId, username, receipt.getMessageId());
         ReadReceiptBroadcast broadcast = new ReadReceiptBroadcast(
                 username, receipt.getMessageId(), LocalDateTime.now()
         );
-        messagingTemplate.convertAndSend("/topic/chat/" + chatId + "/read", broadcast);
+        eventBus.publish(ChatEvent.builder()
+                .type(ChatEvent.Type.READ_RECEIPT)
+                .chatId(chatId)
+                .payload(broadcast)
+                .build());
         log.debug("User {} read message {} in chat {}", username, receipt.getMessageId(), chatId);
     }
 
+    @MessageMapping("/presence")
+    public void handlePresence(@Payload PresenceUpdate update, Principal principal) {
+        presenceService.updateStatus(principal.getName(), update.getStatus());
+    }
+
+    @SubscribeMapping("/presence")
+    public List<UserPresence> getContactPresence(Principal principal) {
+        return presenceService.getContactPresence(principal.getName());
+    }
+
     @MessageMapping("/chat/create-individual")
     public void createIndividualChat(
             @Payload CreateIndividualChatRequest request,
@@ -211,6 +277,10 @@ public class WebSocketController {
             Principal principal) {
 
         String username = principal.getName();
+        chatLanes.execute(chatId, () -> processDeleteMessage(chatId, request, username));
+    }
+
+    private void processDeleteMessage(String chatId, DeleteMessageRequest request, String username) {
         log.info("User {} deleting message {} from chat {}", username, request.getMessageId(), chatId);
 
         try {
@@ -236,6 +306,10 @@ public class WebSocketController {
             Principal principal) {
 
         String username = principal.getName();
+        chatLanes.execute(chatId, () -> processDeleteChat(chatId, username));
+    }
+
+    private void processDeleteChat(String chatId, String username) {
         log.info("User {} deleting chat {}", username, chatId);
 
         try {
@@ -1,5 +1,6 @@
 package com.exotech.urchat.dto.chatDTOs;
 
+import com.exotech.urchat.model.ChatInboxEntry;
 import com.exotech.urchat.model.ChatRoom;
 import com.exotech.urchat.model.User;
 import org.springframework.stereotype.Component;
@@ -24,6 +25,22 @@ public class ChatDTOConvertor {
                 .build();
     }
 
+    // Display fields are resolved when the inbox row is written
+    public ChatRoomDTO convertToChatRoomDTO(ChatInboxEntry entry) {
+        return ChatRoomDTO.builder()
+                .chatId(entry.getChatId())
+                .chatName(entry.getDisplayName())
+                .isGroup(entry.getIsGroup())
+                .lastActivity(entry.getLastActivity())
+                .lastMessage(entry.getLastMessage())
+                .pfpIndex(entry.getPfpIndex())
+                .pfpBg(entry.getPfpBg())
+                .themeIndex(entry.getThemeIndex() == null ? 0 : entry.getThemeIndex())
+                .isDark(entry.getIsDarkTheme() == null)
+                .unreadCount(entry.getUnreadCount())
+                .build();
+    }
+
     public UserChatRoomDTO convertToUserChatRoomDTO(ChatRoom chatRoom, User otherUser) {
         return new UserChatRoomDTO(
                 chatRoom.getChatName(),
@@ -0,0 +1,25 @@
+package com.exotech.urchat.dto.chatDTOs;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatListDelta {
+
+    private String event; // "NEW_MESSAGE", "MEMBERS_CHANGED"
+    private String chatId;
+    private String lastMessage;
+    private LocalDateTime lastActivity;
+    private String sender;
+    // Published once on the shared summary topic, so it is the increment for every member
+    // except sender; the sender's own clients must not add it to their unread count
+    private int unreadIncrement;
+
+}
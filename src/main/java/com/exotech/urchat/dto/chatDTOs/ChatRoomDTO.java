@@ -23,4 +23,6 @@ public class ChatRoomDTO {
     private int themeIndex;
     private Boolean isDark;
 
+    private int unreadCount;
+
 }
@@ -5,4 +5,6 @@ import lombok.Data;
 @Data
 public class ChatMessageRequest {
     private String content;
+    // Generated by the client and reused on retries so a resend isn't stored twice
+    private String clientMessageId;
 }
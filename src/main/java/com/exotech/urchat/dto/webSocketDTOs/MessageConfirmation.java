@@ -6,9 +6,16 @@
     public class MessageConfirmation {
         private Long messageId;
         private String status;
+        private String clientMessageId;
 
         public MessageConfirmation(Long messageId, String status) {
             this.messageId = messageId;
             this.status = status;
         }
+
+        public MessageConfirmation(Long messageId, String status, String clientMessageId) {
+            this.messageId = messageId;
+            this.status = status;
+            this.clientMessageId = clientMessageId;
+        }
     }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.exotech.urchat.dto.webSocketDTOs;
+
+import lombok.Data;
+
+@Data
+public class PresenceUpdate {
+    private String status;
+}
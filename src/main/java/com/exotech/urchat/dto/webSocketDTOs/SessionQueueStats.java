@@ -0,0 +1,17 @@
+package com.exotech.urchat.dto.webSocketDTOs;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionQueueStats {
+    private String sessionId;
+    private String username;
+    private int queuedFrames;
+    private long queuedBytes;
+    private long droppedFrames;
+    private long currentWriteMs;
+}
@@ -1,5 +1,7 @@
 package com.exotech.urchat.listener;
 
+import com.exotech.urchat.service.ChatPresenceRegistry;
+import com.exotech.urchat.service.PresenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
@@ -8,6 +10,8 @@ import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
 @Slf4j
 @Component
@@ -15,6 +19,8 @@ import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 public class WebSocketEventListner {
 
     private final SimpMessageSendingOperations messagingTemplate;
+    private final ChatPresenceRegistry presenceRegistry;
+    private final PresenceService presenceService;
 
     @EventListener
     public void handleWebSocketListner(SessionConnectedEvent event){
@@ -25,15 +31,50 @@ public class WebSocketEventListner {
                 : "unkown";
 
         String sessionId = headerAccessor.getSessionId();
+        if (headerAccessor.getUser() != null) {
+            presenceService.sessionConnected(username, sessionId);
+        }
         log.info("WebSocket connected - User: {}, Session: {}", username, sessionId);
     }
 
+    @EventListener
+    public void handleWebSocketSubscribeListner(SessionSubscribeEvent event){
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (headerAccessor.getUser() == null) {
+            return;
+        }
+
+        presenceRegistry.subscribed(
+                headerAccessor.getUser().getName(),
+                headerAccessor.getSessionId(),
+                headerAccessor.getSubscriptionId(),
+                headerAccessor.getDestination()
+        );
+    }
+
+    @EventListener
+    public void handleWebSocketUnsubscribeListner(SessionUnsubscribeEvent event){
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (headerAccessor.getUser() == null) {
+            return;
+        }
+
+        presenceRegistry.unsubscribed(
+                headerAccessor.getUser().getName(),
+                headerAccessor.getSessionId(),
+                headerAccessor.getSubscriptionId()
+        );
+    }
+
     @EventListener
     public void handleWebSocketDisconnectListner(SessionDisconnectEvent event){
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
         String username = headerAccessor.getUser() != null ? headerAccessor.getUser().getName() : "unknown";
         String sessionId = headerAccessor.getSessionId();
 
+        if (headerAccessor.getUser() != null) {
+            presenceService.sessionDisconnected(username, sessionId);
+        }
         log.info("WebSocket disconnected - User: {}, Session: {}", username, sessionId);
     }
 
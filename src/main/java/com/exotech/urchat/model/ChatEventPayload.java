@@ -0,0 +1,30 @@
+package com.exotech.urchat.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Chat events too large for a NOTIFY payload. The NOTIFY carries only the row id and the
+// other nodes read the event from here; rows are deleted once every listener has had time to.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "chat_event_payloads", indexes = {
+        @Index(name = "idx_chat_event_payloads_created_at", columnList = "created_at")
+})
+public class ChatEventPayload {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
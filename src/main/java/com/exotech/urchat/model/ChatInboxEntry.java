@@ -0,0 +1,64 @@
+package com.exotech.urchat.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Denormalized chat list row, one per (user, chat). Kept in sync on write so
+// reading a chat list is a single range scan on (username, last_activity).
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "chat_inbox",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"username", "chat_id"}),
+        indexes = {
+                @Index(name = "idx_chat_inbox_user_activity", columnList = "username, last_activity"),
+                @Index(name = "idx_chat_inbox_chat", columnList = "chat_id"),
+                @Index(name = "idx_chat_inbox_peer", columnList = "peer_username")
+        })
+public class ChatInboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String username;
+
+    @Column(name = "chat_id", nullable = false)
+    private String chatId;
+
+    // The other participant of an individual chat, null for groups
+    @Column(name = "peer_username")
+    private String peerUsername;
+
+    private String displayName;
+    private Boolean isGroup;
+    private String pfpIndex;
+    private String pfpBg;
+    private Integer themeIndex;
+    private Boolean isDarkTheme;
+
+    @Column(length = 1000)
+    private String lastMessage;
+
+    @Column(name = "last_activity")
+    private LocalDateTime lastActivity;
+
+    @Builder.Default
+    private int unreadCount = 0;
+
+    // Read cursor: newest message this user has read in the chat, compared as
+    // (lastReadAt, lastReadMessageId) because ids alone are not in time order
+    @Column(name = "last_read_message_id")
+    private Long lastReadMessageId;
+
+    @Column(name = "last_read_at")
+    private LocalDateTime lastReadAt;
+}
@@ -11,11 +11,20 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_chat_timestamp_id", columnList = "chat_id, timestamp, message_id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_messages_sender_client_id", columnNames = {"sender_username", "client_message_id"})
+})
 public class Message{
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence so Hibernate can batch inserts; IDENTITY forces one round trip per row
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_seq")
+    @SequenceGenerator(name = "messages_seq", sequenceName = "messages_seq", allocationSize = Message.ID_ALLOCATION_SIZE)
+    @Column(name = "message_id")
     private Long messageId;
 
     @Column(length = 1000)
@@ -32,6 +41,9 @@ public class Message{
     @CreationTimestamp
     private LocalDateTime timestamp;
 
+    @Column(name = "client_message_id", length = 64)
+    private String clientMessageId;
+
     public String getSenderUsername() {
         return sender != null ? sender.getUsername() : null;
     }
@@ -0,0 +1,50 @@
+package com.exotech.urchat.repository;
+
+import com.exotech.urchat.model.ChatInboxEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ChatInboxRepo extends JpaRepository<ChatInboxEntry, Long> {
+
+    @Query("SELECT e FROM ChatInboxEntry e WHERE e.username = :username ORDER BY e.lastActivity DESC NULLS LAST")
+    List<ChatInboxEntry> findInbox(@Param("username") String username);
+
+    List<ChatInboxEntry> findByChatId(String chatId);
+
+    @Modifying
+    @Query("UPDATE ChatInboxEntry e SET e.lastMessage = :lastMessage, e.lastActivity = :lastActivity WHERE e.chatId = :chatId")
+    int updateSummary(@Param("chatId") String chatId,
+                      @Param("lastMessage") String lastMessage, @Param("lastActivity") LocalDateTime lastActivity);
+
+    @Modifying
+    @Query("UPDATE ChatInboxEntry e SET e.themeIndex = :themeIndex, e.isDarkTheme = :isDarkTheme WHERE e.chatId = :chatId")
+    int updateTheme(@Param("chatId") String chatId,
+                    @Param("themeIndex") Integer themeIndex, @Param("isDarkTheme") Boolean isDarkTheme);
+
+    @Modifying
+    @Query("UPDATE ChatInboxEntry e SET e.pfpIndex = :pfpIndex, e.pfpBg = :pfpBg WHERE e.peerUsername = :peerUsername")
+    int updatePeerPfp(@Param("peerUsername") String peerUsername,
+                      @Param("pfpIndex") String pfpIndex, @Param("pfpBg") String pfpBg);
+
+    // Rows whose cursor was written before last_read_at existed
+    @Modifying
+    @Query(value = "UPDATE chat_inbox i SET last_read_at = " +
+            "(SELECT m.timestamp FROM messages m WHERE m.message_id = i.last_read_message_id) " +
+            "WHERE i.last_read_at IS NULL AND i.last_read_message_id IS NOT NULL", nativeQuery = true)
+    int backfillReadPositions();
+
+    @Modifying
+    @Query("DELETE FROM ChatInboxEntry e WHERE e.chatId = :chatId")
+    int deleteByChatId(@Param("chatId") String chatId);
+
+    @Modifying
+    @Query("DELETE FROM ChatInboxEntry e WHERE e.username = :username")
+    int deleteByUsername(@Param("username") String username);
+}
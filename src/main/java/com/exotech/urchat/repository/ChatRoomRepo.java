@@ -20,6 +20,13 @@ public interface ChatRoomRepo extends JpaRepository<ChatRoom, String> {
     @Query("SELECT DISTINCT cr FROM ChatRoom cr JOIN cr.participants p WHERE p.username = :username")
     List<ChatRoom> findByParticipantUsername(@Param("username") String username);
 
+    @Query("SELECT p.username FROM ChatRoom cr JOIN cr.participants p WHERE cr.chatId = :chatId")
+    List<String> findParticipantUsernames(@Param("chatId") String chatId);
+
+    @Query("SELECT DISTINCT other.username FROM ChatRoom cr JOIN cr.participants me JOIN cr.participants other " +
+            "WHERE me.username = :username AND other.username <> :username")
+    List<String> findContactUsernames(@Param("username") String username);
+
     @Modifying
     @Query("DELETE FROM ChatRoom cr WHERE cr.chatId = :chatId")
     void deleteByChatId(@Param("chatId") String chatId);
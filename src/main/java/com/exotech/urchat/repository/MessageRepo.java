@@ -1,15 +1,20 @@
 package com.exotech.urchat.repository;
 
 import com.exotech.urchat.model.Message;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface MessageRepo extends JpaRepository<Message, Long> {
@@ -17,8 +22,30 @@ public interface MessageRepo extends JpaRepository<Message, Long> {
 
     List<Message> findByChatRoomChatIdOrderByTimestampDesc(String chatId, Pageable pageable);
 
-    List<Message> findByChatIdAndTimestampBeforeOrderByTimestampDesc(
-            String chatId, LocalDateTime before, Pageable pageable);
+    // Keyset pages ordered by (timestamp, messageId), matching the messages index
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.chatRoom.chatId = :chatId AND m.timestamp > :since " +
+            "ORDER BY m.timestamp DESC, m.messageId DESC")
+    List<Message> findLatestPage(@Param("chatId") String chatId, @Param("since") LocalDateTime since, Pageable pageable);
+
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.chatRoom.chatId = :chatId AND m.timestamp > :since " +
+            "AND (m.timestamp < :cursorTime OR (m.timestamp = :cursorTime AND m.messageId < :cursorId)) " +
+            "ORDER BY m.timestamp DESC, m.messageId DESC")
+    List<Message> findPageBefore(@Param("chatId") String chatId, @Param("since") LocalDateTime since,
+                                 @Param("cursorTime") LocalDateTime cursorTime, @Param("cursorId") Long cursorId,
+                                 Pageable pageable);
+
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.chatRoom.chatId = :chatId AND m.timestamp > :since " +
+            "AND (m.timestamp > :cursorTime OR (m.timestamp = :cursorTime AND m.messageId > :cursorId)) " +
+            "ORDER BY m.timestamp ASC, m.messageId ASC")
+    List<Message> findPageAfter(@Param("chatId") String chatId, @Param("since") LocalDateTime since,
+                                @Param("cursorTime") LocalDateTime cursorTime, @Param("cursorId") Long cursorId,
+                                Pageable pageable);
+
+    @Query("SELECT m.messageId FROM Message m WHERE m.sender.username = :sender AND m.clientMessageId = :clientMessageId")
+    Optional<Long> findIdByClientMessageId(@Param("sender") String sender, @Param("clientMessageId") String clientMessageId);
+
+    @Query("SELECT m.timestamp FROM Message m WHERE m.messageId = :messageId AND m.chatRoom.chatId = :chatId")
+    Optional<LocalDateTime> findTimestampInChat(@Param("messageId") Long messageId, @Param("chatId") String chatId);
 
     @Query("SELECT m FROM Message m WHERE m.chatRoom.chatId = :chatId ORDER BY m.timestamp DESC LIMIT 1")
     Message findLastMessageByChatId(@Param("chatId") String chatId);
@@ -56,6 +83,14 @@ public interface MessageRepo extends JpaRepository<Message, Long> {
 
     List<Message> findByChatRoom_ChatIdOrderByTimestampAsc(String chatId);
 
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.chatRoom " +
+            "WHERE m.chatRoom.chatId = :chatId AND m.timestamp > :since ORDER BY m.timestamp ASC, m.messageId ASC")
+    Stream<Message> streamByChatIdSince(@Param("chatId") String chatId, @Param("since") LocalDateTime since);
+
     @Query("SELECT m FROM Message m WHERE m.timestamp < :threshold")
     List<Message> findMessagesOlderThan(@Param("threshold") LocalDateTime threshold);
 
@@ -0,0 +1,63 @@
+package com.exotech.urchat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Serializes a broadcast payload to JSON once and sends the same bytes to every
+// destination, instead of convertAndSend running Jackson again for each recipient.
+// Uses the same ObjectMapper as the STOMP message converter, so the JSON is identical.
+@Component
+@RequiredArgsConstructor
+public class BroadcastSerializer {
+
+    private static final MimeType TEXT_PLAIN_UTF8 = new MimeType("text", "plain", StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    // Writers resolve their serializers once per type; MessageDTO and friends are sent constantly
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public Message<byte[]> serialize(Object payload) {
+        try {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            byte[] body;
+            // Plain strings go out as text, the same as the template's StringMessageConverter would send them
+            if (payload instanceof String text) {
+                body = text.getBytes(StandardCharsets.UTF_8);
+                accessor.setContentType(TEXT_PLAIN_UTF8);
+            } else {
+                body = writers.computeIfAbsent(payload.getClass(), objectMapper::writerFor).writeValueAsBytes(payload);
+                accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            }
+            // Immutable, so each send copies the headers rather than stamping its destination on the shared message
+            accessor.setImmutable();
+            return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize " + payload.getClass().getSimpleName(), e);
+        }
+    }
+
+    // The template copies the headers per destination; the byte[] itself is shared
+    public void send(String destination, Message<byte[]> message) {
+        messagingTemplate.send(destination, message);
+    }
+
+    public void sendToUser(String username, String destination, Message<byte[]> message) {
+        messagingTemplate.send(messagingTemplate.getUserDestinationPrefix() + username.replace("/", "%2F") + destination, message);
+    }
+}
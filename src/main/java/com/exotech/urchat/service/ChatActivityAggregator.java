@@ -0,0 +1,155 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.dto.chatDTOs.ChatRoomDTO;
+import com.exotech.urchat.model.Message;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Holds the latest message per chat in memory and writes it to chat_rooms and
+// chat_inbox in batches, so busy groups don't have every sender queue up on
+// the same chat row lock. Unread counts are incremented by the number of buffered
+// messages from other senders; ReadCursorService flushes a chat's activity before it
+// recounts from messages, so a message is never counted both ways.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatActivityAggregator {
+
+    private static final String CHAT_ROOM_SQL =
+            "UPDATE chat_rooms SET last_message = ?, last_activity = ? " +
+            "WHERE chat_id = ? AND (last_activity IS NULL OR last_activity <= ?)";
+    private static final String INBOX_SQL =
+            "UPDATE chat_inbox SET last_message = ?, last_activity = ? " +
+            "WHERE chat_id = ? AND (last_activity IS NULL OR last_activity <= ?)";
+    private static final String INBOX_UNREAD_SQL =
+            "UPDATE chat_inbox SET unread_count = unread_count + ? WHERE chat_id = ? AND username <> ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, PendingActivity> pending = new ConcurrentHashMap<>();
+
+    // sentBy: sender -> messages not yet counted as unread for the other members
+    private record PendingActivity(String lastMessage, LocalDateTime lastActivity, Map<String, Integer> sentBy) {
+
+        // Newest summary, with the messages of both
+        PendingActivity merge(PendingActivity other) {
+            PendingActivity newest = other.lastActivity().isBefore(lastActivity) ? this : other;
+            Map<String, Integer> counts = new HashMap<>(sentBy);
+            other.sentBy().forEach((sender, count) -> counts.merge(sender, count, Integer::sum));
+            return new PendingActivity(newest.lastMessage(), newest.lastActivity(), counts);
+        }
+    }
+
+    // Applied once the sending transaction commits, so rolled back messages never show up
+    // and the persisted timestamp is known
+    public void record(String chatId, Message message) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(chatId, message);
+                }
+            });
+        } else {
+            add(chatId, message);
+        }
+    }
+
+    // Overlays activity that hasn't been flushed yet onto a chat list read from the inbox.
+    // Unread counts are left as read: they lag by at most one flush.
+    public List<ChatRoomDTO> overlay(List<ChatRoomDTO> chats) {
+        if (pending.isEmpty()) {
+            return chats;
+        }
+        boolean changed = false;
+        for (ChatRoomDTO chat : chats) {
+            PendingActivity activity = pending.get(chat.getChatId());
+            if (activity == null
+                    || (chat.getLastActivity() != null && activity.lastActivity().isBefore(chat.getLastActivity()))) {
+                continue;
+            }
+            chat.setLastMessage(activity.lastMessage());
+            chat.setLastActivity(activity.lastActivity());
+            changed = true;
+        }
+        if (changed) {
+            chats.sort(Comparator.comparing(ChatRoomDTO::getLastActivity,
+                    Comparator.nullsLast(Comparator.reverseOrder())));
+        }
+        return chats;
+    }
+
+    // Writes one chat's pending activity now, for callers about to recompute its summary
+    public void flushChat(String chatId) {
+        flushChats(List.of(chatId));
+    }
+
+    // Writes these chats' pending activity now, for callers about to recount their unread messages
+    public void flushChats(Collection<String> chatIds) {
+        Map<String, PendingActivity> drained = new HashMap<>();
+        for (String chatId : chatIds) {
+            PendingActivity activity = pending.remove(chatId);
+            if (activity != null) {
+                drained.put(chatId, activity);
+            }
+        }
+        write(drained);
+    }
+
+    @Scheduled(fixedDelayString = "${app.chat.activity-flush-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        Map<String, PendingActivity> drained = new HashMap<>();
+        for (String chatId : pending.keySet()) {
+            PendingActivity activity = pending.remove(chatId);
+            if (activity != null) {
+                drained.put(chatId, activity);
+            }
+        }
+        write(drained);
+    }
+
+    private void add(String chatId, Message message) {
+        PendingActivity activity = new PendingActivity(message.getMessageContent(), message.getTimestamp(),
+                Map.of(message.getSenderUsername(), 1));
+        pending.merge(chatId, activity, PendingActivity::merge);
+    }
+
+    private void write(Map<String, PendingActivity> drained) {
+        if (drained.isEmpty()) {
+            return;
+        }
+        List<Object[]> summaries = new ArrayList<>(drained.size());
+        List<Object[]> unread = new ArrayList<>(drained.size());
+
+        drained.forEach((chatId, activity) -> {
+            summaries.add(new Object[]{activity.lastMessage(), activity.lastActivity(), chatId, activity.lastActivity()});
+            activity.sentBy().forEach((sender, count) -> unread.add(new Object[]{count, chatId, sender}));
+        });
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(CHAT_ROOM_SQL, summaries);
+                jdbcTemplate.batchUpdate(INBOX_SQL, summaries);
+                jdbcTemplate.batchUpdate(INBOX_UNREAD_SQL, unread);
+            });
+            log.debug("Flushed activity for {} chats", drained.size());
+        } catch (Exception e) {
+            // Nothing was written; put it back for the next flush, keeping any newer summary that arrived meanwhile
+            drained.forEach((chatId, activity) -> pending.merge(chatId, activity, PendingActivity::merge));
+            log.error("❌ Failed to flush activity for {} chats, will retry: {}", drained.size(), e.getMessage());
+        }
+    }
+}
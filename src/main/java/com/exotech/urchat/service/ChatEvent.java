@@ -0,0 +1,44 @@
+package com.exotech.urchat.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Something that happened in a chat and has to reach the sessions watching it,
+// whichever node they are connected to. The payload is what clients receive.
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatEvent {
+
+    @Getter
+    public enum Type {
+        MESSAGE_CREATED(""),
+        CHAT_ACTIVITY("/summary"),
+        MESSAGE_DELETED("/message-deleted"),
+        CHAT_DELETED("/chat-deleted"),
+        MEMBERSHIP_CHANGED("/summary"),
+        TYPING("/typing"),
+        READ_RECEIPT("/read"),
+        // Between nodes only: evicts the chat from every ChatMembershipCache, never sent to clients
+        MEMBERSHIP_INVALIDATED(null);
+
+        // Appended to /topic/chat/{chatId}
+        private final String topicSuffix;
+
+        Type(String topicSuffix) {
+            this.topicSuffix = topicSuffix;
+        }
+    }
+
+    private Type type;
+    private String chatId;
+    private Object payload;
+    // Users who also get the payload on /user/queue/chat-deleted, since they may not be subscribed to the chat
+    private List<String> recipients;
+}
@@ -0,0 +1,8 @@
+package com.exotech.urchat.service;
+
+// Services publish chat events here instead of calling SimpMessagingTemplate, so the
+// events reach sessions on every node. Selected with app.events.bus (local, postgres).
+public interface ChatEventBus {
+
+    void publish(ChatEvent event);
+}
@@ -0,0 +1,34 @@
+package com.exotech.urchat.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+// Hands a chat event to the sessions connected to this node
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatEventDelivery {
+
+    private final BroadcastSerializer broadcastSerializer;
+    private final ChatMembershipCache membershipCache;
+
+    public void deliver(ChatEvent event) {
+        if (event.getType() == ChatEvent.Type.MEMBERSHIP_INVALIDATED) {
+            membershipCache.evict(event.getChatId());
+            return;
+        }
+        try {
+            Message<byte[]> message = broadcastSerializer.serialize(event.getPayload());
+            if (event.getRecipients() != null) {
+                for (String username : event.getRecipients()) {
+                    broadcastSerializer.sendToUser(username, "/queue/chat-deleted", message);
+                }
+            }
+            broadcastSerializer.send("/topic/chat/" + event.getChatId() + event.getType().getTopicSuffix(), message);
+        } catch (Exception e) {
+            log.error("❌ Error delivering {} for chat {}: {}", event.getType(), event.getChatId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.dto.chatDTOs.ChatDTOConvertor;
+import com.exotech.urchat.dto.chatDTOs.ChatRoomDTO;
+import com.exotech.urchat.model.ChatInboxEntry;
+import com.exotech.urchat.model.ChatRoom;
+import com.exotech.urchat.model.User;
+import com.exotech.urchat.repository.ChatInboxRepo;
+import com.exotech.urchat.repository.ChatRoomRepo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Maintains the chat_inbox rows that back the chat list. Writes join the caller's
+// transaction; new-message activity arrives separately via ChatActivityAggregator.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatInboxService {
+
+    private final ChatInboxRepo chatInboxRepo;
+    private final ChatRoomRepo chatRoomRepo;
+    private final ChatDTOConvertor chatDTOConvertor;
+
+    @Transactional(readOnly = true)
+    public List<ChatRoomDTO> getInbox(String username) {
+        return chatInboxRepo.findInbox(username).stream()
+                .map(chatDTOConvertor::convertToChatRoomDTO)
+                .collect(Collectors.toList());
+    }
+
+    // Rebuilds the rows of one chat from its participants: adds joiners, drops leavers
+    // and refreshes display fields. Unread counts of existing members are kept.
+    @Transactional
+    public void syncChat(ChatRoom chat) {
+        Map<String, ChatInboxEntry> existing = chatInboxRepo.findByChatId(chat.getChatId()).stream()
+                .collect(Collectors.toMap(ChatInboxEntry::getUsername, Function.identity()));
+
+        for (User participant : chat.getParticipants()) {
+            String username = participant.getUsername();
+            ChatInboxEntry entry = existing.remove(username);
+            if (entry == null) {
+                entry = ChatInboxEntry.builder()
+                        .username(username)
+                        .chatId(chat.getChatId())
+                        .lastMessage(chat.getLastMessage())
+                        .lastActivity(chat.getLastActivity())
+                        .build();
+            }
+            applyDisplay(entry, chat, username);
+            chatInboxRepo.save(entry);
+        }
+
+        if (!existing.isEmpty()) {
+            chatInboxRepo.deleteAll(existing.values());
+        }
+    }
+
+    @Transactional
+    public void updateSummary(String chatId, String lastMessage, LocalDateTime lastActivity) {
+        chatInboxRepo.updateSummary(chatId, lastMessage, lastActivity);
+    }
+
+    @Transactional
+    public void updateTheme(String chatId, Integer themeIndex, Boolean isDarkTheme) {
+        chatInboxRepo.updateTheme(chatId, themeIndex, isDarkTheme);
+    }
+
+    // A user's pfp shows up in the inbox of everyone they have an individual chat with
+    @Transactional
+    public void updateUserProfile(User user) {
+        chatInboxRepo.updatePeerPfp(user.getUsername(),
+                user.getPfpIndex() != null ? user.getPfpIndex() : "💬",
+                user.getPfpBg() != null ? user.getPfpBg() : "#2196F3");
+    }
+
+    @Transactional
+    public void removeChat(String chatId) {
+        chatInboxRepo.deleteByChatId(chatId);
+    }
+
+    @Transactional
+    public void removeUser(String username) {
+        chatInboxRepo.deleteByUsername(username);
+    }
+
+    // One-off fill for databases created before the inbox existed
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        int cursors = chatInboxRepo.backfillReadPositions();
+        if (cursors > 0) {
+            log.info("✅ Backfilled read positions for {} inbox rows", cursors);
+        }
+        if (chatInboxRepo.count() > 0) {
+            return;
+        }
+        List<ChatRoom> chats = chatRoomRepo.findAll();
+        chats.forEach(this::syncChat);
+        log.info("✅ Backfilled chat inbox for {} chats", chats.size());
+    }
+
+    private void applyDisplay(ChatInboxEntry entry, ChatRoom chat, String username) {
+        entry.setIsGroup(chat.getIsGroup());
+        entry.setDisplayName(chat.getDisplayName(username));
+        entry.setPfpIndex(chat.getChatPfpIndex(username));
+        entry.setPfpBg(chat.getChatPfpBg(username));
+        entry.setThemeIndex(chat.getThemeIndex());
+        entry.setIsDarkTheme(chat.getIsDarkTheme());
+        entry.setPeerUsername(chat.getIsGroup() ? null : chat.getParticipants().stream()
+                .map(User::getUsername)
+                .filter(other -> !other.equals(username))
+                .findFirst()
+                .orElse(null));
+    }
+}
@@ -0,0 +1,89 @@
+package com.exotech.urchat.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Hashes each chatId onto one of a fixed set of single-threaded lanes. Commands for
+// the same chat run strictly in the order they were submitted (a delete can never
+// overtake the send it targets), while different chats proceed in parallel. Lane queues
+// share the inbound channel's app.websocket.queue-capacity, so a stalled chat can't
+// buffer commands without bound.
+@Slf4j
+@Component
+public class ChatLaneExecutor {
+
+    @Value("${app.websocket.chat-lanes:64}")
+    private int laneCount;
+
+    @Value("${app.websocket.executor:platform}")
+    private String executorMode;
+
+    @Value("${app.websocket.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private ExecutorService[] lanes;
+
+    @PostConstruct
+    public void start() {
+        boolean virtual = "virtual".equalsIgnoreCase(executorMode);
+        int laneCapacity = Math.max(1, queueCapacity / laneCount);
+        lanes = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(laneCapacity),
+                    threadFactory("chat-lane-" + i, virtual), rejectWhenFull("chat-lane-" + i));
+        }
+        log.info("✅ Started {} chat lanes ({} threads, {} queued commands each)",
+                laneCount, virtual ? "virtual" : "platform", laneCapacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        // Let queued sends and deletes finish rather than dropping them
+        for (ExecutorService lane : lanes) {
+            lane.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    public void execute(String chatId, Runnable command) {
+        lanes[(chatId.hashCode() & 0x7fffffff) % laneCount].execute(() -> {
+            try {
+                command.run();
+            } catch (Exception e) {
+                log.error("❌ Chat lane task for chat {} failed: {}", chatId, e.getMessage());
+            }
+        });
+    }
+
+    // Running the command on the caller would let it overtake the ones queued for its chat
+    private RejectedExecutionHandler rejectWhenFull(String name) {
+        return (command, executor) -> {
+            log.warn("⚠️ {} is full ({} queued), rejecting command", name, executor.getQueue().size());
+            throw new RejectedExecutionException(name + " is full");
+        };
+    }
+
+    private ThreadFactory threadFactory(String name, boolean virtual) {
+        if (virtual) {
+            return Thread.ofVirtual().name(name).factory();
+        }
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.model.ChatRoom;
+import com.exotech.urchat.repository.ChatRoomRepo;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// chatId -> participant usernames plus the group display fields, bounded with LRU eviction.
+// Used for access checks and the send path so they don't need a join query or a participant list load.
+// Changes are evicted on every node through the event bus once they commit; entries also expire
+// after a short TTL, which bounds staleness if a node misses that event (e.g. while reconnecting).
+@Slf4j
+@Component
+public class ChatMembershipCache {
+
+    private final ChatRoomRepo chatRoomRepo;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long ttlMs;
+    private final Map<String, CachedMembership> chats;
+
+    @Data
+    @AllArgsConstructor
+    public static class ChatMembership {
+        private boolean exists;
+        private Set<String> members;
+        private boolean group;
+        // Only resolved for groups; individual chats show the sender instead
+        private String groupName;
+        private String groupPfpIndex;
+        private String groupPfpBg;
+    }
+
+    private record CachedMembership(ChatMembership membership, long loadedAt) {
+    }
+
+    public ChatMembershipCache(ChatRoomRepo chatRoomRepo,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${app.chat.membership-cache-size:10000}") int maxSize,
+                               @Value("${app.chat.membership-cache-ttl-ms:30000}") long ttlMs) {
+        this.chatRoomRepo = chatRoomRepo;
+        this.eventPublisher = eventPublisher;
+        this.ttlMs = ttlMs;
+        this.chats = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedMembership> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public boolean isMember(String chatId, String username) {
+        return getMembers(chatId).contains(username);
+    }
+
+    public Set<String> getMembers(String chatId) {
+        return get(chatId).getMembers();
+    }
+
+    public ChatMembership get(String chatId) {
+        synchronized (chats) {
+            CachedMembership cached = chats.get(chatId);
+            if (cached != null && System.currentTimeMillis() - cached.loadedAt() <= ttlMs) {
+                return cached.membership();
+            }
+        }
+
+        long loadedAt = System.currentTimeMillis();
+        ChatMembership loaded = load(chatId);
+        synchronized (chats) {
+            chats.put(chatId, new CachedMembership(loaded, loadedAt));
+        }
+        return loaded;
+    }
+
+    // Evicts now and again after commit, so a read that raced the change can't keep a stale set.
+    // Other nodes evict once the change commits, see MembershipInvalidationPublisher.
+    public void invalidate(String chatId) {
+        remove(chatId);
+        eventPublisher.publishEvent(new ChatMembershipInvalidatedEvent(chatId));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(chatId);
+                }
+            });
+        }
+    }
+
+    // A change made on another node; only this node's copy is dropped
+    public void evict(String chatId) {
+        remove(chatId);
+    }
+
+    private ChatMembership load(String chatId) {
+        ChatRoom chat = chatRoomRepo.findById(chatId).orElse(null);
+        if (chat == null) {
+            return new ChatMembership(false, Set.of(), false, null, null, null);
+        }
+        Set<String> members = Set.copyOf(chatRoomRepo.findParticipantUsernames(chatId));
+        boolean group = Boolean.TRUE.equals(chat.getIsGroup());
+        return group
+                ? new ChatMembership(true, members, true,
+                        chat.getDisplayName(null), chat.getChatPfpIndex(null), chat.getChatPfpBg(null))
+                : new ChatMembership(true, members, false, null, null, null);
+    }
+
+    private void remove(String chatId) {
+        synchronized (chats) {
+            chats.remove(chatId);
+        }
+        log.debug("Invalidated membership cache for chat {}", chatId);
+    }
+}
@@ -0,0 +1,11 @@
+package com.exotech.urchat.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Published when a chat's members change, so other nodes drop their cached copy
+@Data
+@AllArgsConstructor
+public class ChatMembershipInvalidatedEvent {
+    private String chatId;
+}
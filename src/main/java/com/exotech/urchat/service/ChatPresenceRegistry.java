@@ -0,0 +1,115 @@
+package com.exotech.urchat.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Live STOMP sessions per user and the chat topics each session is subscribed to.
+// Reads are lock-free; writes for one user are serialized on a lock stripe so
+// first-session / last-session transitions are exact without a global lock.
+// Node-local: it only knows sessions connected to this instance. With several nodes,
+// presence and push suppression built on it are best effort, see PresenceService.
+@Slf4j
+@Component
+public class ChatPresenceRegistry {
+
+    private static final String CHAT_TOPIC_PREFIX = "/topic/chat/";
+    private static final int LOCK_STRIPES = 64;
+
+    // username -> sessionId -> subscriptionId -> chatId
+    private final Map<String, Map<String, Map<String, String>>> sessions = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public ChatPresenceRegistry() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // Returns true when this is the user's first live session
+    public boolean sessionConnected(String username, String sessionId) {
+        synchronized (lockFor(username)) {
+            Map<String, Map<String, String>> userSessions = sessions.get(username);
+            boolean firstSession = userSessions == null;
+            if (firstSession) {
+                userSessions = new ConcurrentHashMap<>();
+                sessions.put(username, userSessions);
+            }
+            userSessions.putIfAbsent(sessionId, new ConcurrentHashMap<>());
+            return firstSession;
+        }
+    }
+
+    public void subscribed(String username, String sessionId, String subscriptionId, String destination) {
+        String chatId = extractChatId(destination);
+        if (chatId == null) {
+            return;
+        }
+        synchronized (lockFor(username)) {
+            Map<String, Map<String, String>> userSessions = sessions.computeIfAbsent(username, k -> new ConcurrentHashMap<>());
+            userSessions.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>()).put(subscriptionId, chatId);
+        }
+        log.debug("User {} is viewing chat {} (session {})", username, chatId, sessionId);
+    }
+
+    public void unsubscribed(String username, String sessionId, String subscriptionId) {
+        synchronized (lockFor(username)) {
+            Map<String, Map<String, String>> userSessions = sessions.get(username);
+            if (userSessions == null) {
+                return;
+            }
+            Map<String, String> subscriptions = userSessions.get(sessionId);
+            if (subscriptions != null) {
+                subscriptions.remove(subscriptionId);
+            }
+        }
+    }
+
+    // Returns true when the user has no live sessions left
+    public boolean sessionDisconnected(String username, String sessionId) {
+        synchronized (lockFor(username)) {
+            Map<String, Map<String, String>> userSessions = sessions.get(username);
+            if (userSessions == null) {
+                return false;
+            }
+            userSessions.remove(sessionId);
+            if (userSessions.isEmpty()) {
+                sessions.remove(username);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public boolean isOnline(String username) {
+        return sessions.containsKey(username);
+    }
+
+    public boolean isViewingChat(String username, String chatId) {
+        Map<String, Map<String, String>> userSessions = sessions.get(username);
+        if (userSessions == null) {
+            return false;
+        }
+        for (Map<String, String> subscriptions : userSessions.values()) {
+            if (subscriptions.containsValue(chatId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Object lockFor(String username) {
+        return locks[(username.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    // Only the message stream /topic/chat/{chatId} means the chat is open, not its /typing, /read or /summary topics
+    private String extractChatId(String destination) {
+        if (destination == null || !destination.startsWith(CHAT_TOPIC_PREFIX)) {
+            return null;
+        }
+        String chatId = destination.substring(CHAT_TOPIC_PREFIX.length());
+        return chatId.isEmpty() || chatId.contains("/") ? null : chatId;
+    }
+}
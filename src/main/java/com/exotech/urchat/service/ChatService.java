@@ -12,31 +12,50 @@ import com.exotech.urchat.model.User;
 import com.exotech.urchat.repository.ChatRoomRepo;
 import com.exotech.urchat.repository.MessageRepo;
 import com.exotech.urchat.repository.UserRepo;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ChatService {
 
+    public static final int MAX_PAGE_SIZE = 100;
+
     private final ChatRoomRepo chatRoomRepo;
     private final MessageRepo messageRepo;
     private final UserRepo userRepo;
     private final MessageDTOConvertor messageDTOConvertor;
     private final ChatDTOConvertor chatDTOConvertor;
-    private final SimpMessagingTemplate messagingTemplate;
-    private final NotificationService notificationService;
+    private final ChatEventBus eventBus;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ContactCache contactCache;
+    private final ChatMembershipCache membershipCache;
+    private final ChatInboxService chatInboxService;
+    private final ReadCursorService readCursorService;
+    private final ChatActivityAggregator activityAggregator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
 
     @Transactional
     public ChatRoomDTO getOrCreateIndividualChat(String user1, String user2) {
@@ -62,140 +81,181 @@ public class ChatService {
         chatRoom.getParticipants().add(user1Entity);
         chatRoom.getParticipants().add(user2Entity);
 
-        return chatDTOConvertor.convertToChatRoomDTO(chatRoomRepo.save(chatRoom));
+        ChatRoom savedChat = chatRoomRepo.save(chatRoom);
+        membershipCache.invalidate(savedChat.getChatId());
+        contactCache.evict(List.of(user1, user2));
+        chatInboxService.syncChat(savedChat);
+        return chatDTOConvertor.convertToChatRoomDTO(savedChat);
     }
 
+    // One read per message at most: the sender row. The chat is a reference proxy and
+    // membership, group display fields and notification recipients come from the cache.
     @Transactional
-    public Message sendMessage(String senderUsername, String chatId, String content) {
-        ChatRoom chat = chatRoomRepo.findById(chatId)
-                .orElseThrow(() -> new RuntimeException("Chat not found"));
-        User sender = userRepo.findByUsername(senderUsername)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        boolean isParticipant = chat.hasParticipant(senderUsername);
-        if (!isParticipant) {
+    public Message sendMessage(String senderUsername, String chatId, String content, String clientMessageId) {
+        ChatMembershipCache.ChatMembership membership = membershipCache.get(chatId);
+        if (!membership.isExists()) {
+            throw new RuntimeException("Chat not found");
+        }
+        if (!membership.getMembers().contains(senderUsername)) {
             throw new RuntimeException("You cannot message in this chat");
         }
+        User sender = userRepo.findByUsername(senderUsername)
+                .orElseThrow(() -> new RuntimeException("User not found"));
 
         Message message = new Message();
         message.setMessageContent(content);
         message.setSender(sender);
-        message.setChatRoom(chat);
+        message.setChatRoom(chatRoomRepo.getReferenceById(chatId));
+        message.setClientMessageId(clientMessageId);
 
         Message savedMessage = messageRepo.save(message);
 
-        chat.setLastMessage(message.getMessageContent());
-        chat.setLastActivity(LocalDateTime.now());
-        chatRoomRepo.save(chat);
+        // chat_rooms and chat_inbox pick this up on the aggregator's next flush
+        activityAggregator.record(chatId, savedMessage);
 
-        String chatDisplayName = chat.getDisplayName(senderUsername);
+        List<String> recipients = membership.getMembers().stream()
+                .filter(username -> !username.equals(senderUsername))
+                .toList();
 
-        notificationService.sendMessageNotification(
+        // Delivered by NotificationService workers once this transaction commits
+        eventPublisher.publishEvent(new MessageNotificationEvent(
                 chatId,
                 senderUsername,
                 content,
-                chatDisplayName,
-                chat.getIsGroup()
-        );
+                membership.isGroup() ? membership.getGroupName() : senderUsername,
+                membership.isGroup(),
+                membership.isGroup() ? membership.getGroupPfpIndex() : Objects.requireNonNullElse(sender.getPfpIndex(), "💬"),
+                membership.isGroup() ? membership.getGroupPfpBg() : Objects.requireNonNullElse(sender.getPfpBg(), "#2196F3"),
+                recipients
+        ));
 
         return savedMessage;
     }
 
-    public List<MessageDTO> getChatMessages(String chatId, String username) {
-        if (!chatRoomRepo.existsByChatIdAndParticipantUsername(chatId, username)) {
+    // Writes the chat's recent history as a JSON array one row at a time, so memory use
+    // doesn't grow with chat size. Access is checked before the response starts.
+    public StreamingResponseBody streamChatMessages(String chatId, String username) {
+        if (!membershipCache.isMember(chatId, username)) {
             throw new RuntimeException("Access denied to this chat");
         }
-//        List<Message> messages = messageRepo.findMessagesWithChatRoom(chatId);
-         List<Message> messages = messageRepo.findByChatRoom_ChatIdOrderByTimestampAsc(chatId);
-
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(7);
-
-        return messages.stream()
-                .filter(message -> message.getTimestamp().isAfter(thirtyDaysAgo))
-                .map(message -> messageDTOConvertor.convertToMessageDTO(message, username))
-                .collect(Collectors.toList());
+        LocalDateTime since = LocalDateTime.now().minusDays(7);
+        ObjectWriter writer = objectMapper.writerFor(MessageDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        return outputStream -> {
+            TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+            readOnly.setReadOnly(true);
+            readOnly.executeWithoutResult(status -> {
+                try (Stream<Message> messages = messageRepo.streamByChatIdSince(chatId, since);
+                     JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                    generator.writeStartArray();
+                    Iterator<Message> iterator = messages.iterator();
+                    while (iterator.hasNext()) {
+                        Message message = iterator.next();
+                        writer.writeValue(generator, messageDTOConvertor.convertToMessageDTO(message, username));
+                        entityManager.detach(message);
+                    }
+                    generator.writeEndArray();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        };
     }
 
-    public List<MessageDTO> getPaginatedMessages(String chatId, int page, int size, String currentUser) {
-        if (!chatRoomRepo.existsByChatIdAndParticipantUsername(chatId, currentUser)) {
+    // Cursor pages: no cursor returns the newest page, before/after return the page
+    // adjacent to that message. Results are always oldest first.
+    public List<MessageDTO> getPaginatedMessages(String chatId, Long before, Long after, int size, String currentUser) {
+        if (!membershipCache.isMember(chatId, currentUser)) {
             throw new RuntimeException("Access denied to this chat");
         }
+        if (before != null && after != null) {
+            throw new RuntimeException("Use either before or after, not both");
+        }
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by("timestamp").descending());
-        List<Message> messages = messageRepo.findByChatRoomChatIdOrderByTimestampDesc(chatId, pageable);
-        Collections.reverse(messages);
+        Pageable limit = PageRequest.of(0, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        LocalDateTime since = LocalDateTime.now().minusDays(7);
+        List<Message> messages;
 
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(7);
+        if (after != null) {
+            LocalDateTime cursorTime = messageRepo.findTimestampInChat(after, chatId)
+                    .orElseThrow(() -> new RuntimeException("Message not found"));
+            return toMessageDTOs(messageRepo.findPageAfter(chatId, since, cursorTime, after, limit), currentUser);
+        }
 
+        if (before != null) {
+            LocalDateTime cursorTime = messageRepo.findTimestampInChat(before, chatId)
+                    .orElseThrow(() -> new RuntimeException("Message not found"));
+            messages = new ArrayList<>(messageRepo.findPageBefore(chatId, since, cursorTime, before, limit));
+        } else {
+            messages = new ArrayList<>(messageRepo.findLatestPage(chatId, since, limit));
+        }
+        Collections.reverse(messages);
+        return toMessageDTOs(messages, currentUser);
+    }
+
+    private List<MessageDTO> toMessageDTOs(List<Message> messages, String currentUser) {
         return messages.stream()
-                .filter(message -> message.getTimestamp().isAfter(thirtyDaysAgo))
                 .map(message -> messageDTOConvertor.convertToMessageDTO(message, currentUser))
                 .collect(Collectors.toList());
     }
 
-    @Transactional
-    public void updateChatListsForParticipants(String chatId, String username) {
+    // One publish per event on the chat's summary topic; every member's chat list subscribes to it,
+    // the sender included, so clients skip the unread increment on deltas they sent themselves
+    public void publishChatListDelta(Message message) {
+        String chatId = message.getChatId();
         try {
-            ChatRoom chatRoom = chatRoomRepo.findByIdWithParticipants(chatId)
-                    .orElseThrow(() -> new RuntimeException("Chat room not found"));
-
-            log.info("🚀 Updating chat lists for {} participants in chat: {}",
-                    chatRoom.getParticipants().size(), chatId);
-
-            // Update chat list for all participants
-            for (User participant : chatRoom.getParticipants()) {
-                String participantUsername = participant.getUsername();
-                updateChatListForUser(participantUsername);
-                log.info("   📤 Sent update to: {}", participantUsername);
-            }
-
-            log.info("✅ Successfully updated chat lists for all participants");
-
+            ChatListDelta delta = ChatListDelta.builder()
+                    .event("NEW_MESSAGE")
+                    .chatId(chatId)
+                    .lastMessage(message.getMessageContent())
+                    .lastActivity(message.getTimestamp())
+                    .sender(message.getSenderUsername())
+                    .unreadIncrement(1)
+                    .build();
+
+            eventBus.publish(ChatEvent.builder()
+                    .type(ChatEvent.Type.CHAT_ACTIVITY)
+                    .chatId(chatId)
+                    .payload(delta)
+                    .build());
+            log.debug("📤 Published chat list delta for chat {}", chatId);
         } catch (Exception e) {
-            log.error("❌ Error updating chat lists: {}", e.getMessage());
-            throw new RuntimeException("Failed to update chat lists", e);
+            log.error("❌ Error publishing chat list delta for chat {}: {}", chatId, e.getMessage());
         }
     }
 
-    private void updateChatListForUser(String username) {
+    public void publishMembershipChange(String chatId, String username) {
         try {
-            List<ChatRoomDTO> updatedChats = getUserChats(username);
-
-            log.info("📤 Sending chat list update to user: {} with {} chats", username, updatedChats.size());
-
-            messagingTemplate.convertAndSendToUser(
-                    username,
-                    "/queue/chats/update",
-                    updatedChats
-            );
-
-            log.debug("✅ Sent chat list update to user: {}", username);
+            ChatListDelta delta = ChatListDelta.builder()
+                    .event("MEMBERS_CHANGED")
+                    .chatId(chatId)
+                    .sender(username)
+                    .build();
+
+            eventBus.publish(ChatEvent.builder()
+                    .type(ChatEvent.Type.MEMBERSHIP_CHANGED)
+                    .chatId(chatId)
+                    .payload(delta)
+                    .build());
+            log.debug("📤 Published membership change for chat {}", chatId);
         } catch (Exception e) {
-            log.error("❌ Error updating chat list for user {}: {}", username, e.getMessage());
+            log.error("❌ Error publishing membership change for chat {}: {}", chatId, e.getMessage());
         }
     }
 
-    @Transactional(readOnly = true)
+    // Not transactional: the cursor flush writes in its own transaction, then the inbox is read
     public List<ChatRoomDTO> getUserChats(String username) {
-        System.out.println("Entered Get Users Chat Service");
-        List<ChatRoom> chats = chatRoomRepo.findByParticipantUsername(username);
-        chats.sort((a,b) -> b.getLastActivity().compareTo(a.getLastActivity()));
-
-        return chats.stream().map(chat -> {
-            ChatRoomDTO dto = chatDTOConvertor.convertToChatRoomDTO(chat);
-            dto.setChatName(chat.getDisplayName(username));
-            dto.setPfpIndex(chat.getChatPfpIndex(username));
-            dto.setPfpBg(chat.getChatPfpBg(username));
-            dto.setLastMessage(chat.getLastMessage());
-
-            System.out.println(chat.getDisplayName(username) + "  " + chat.getChatPfpIndex(username) + "  " + chat.getChatPfpBg(username));
-
-//            Message lastMessage = messageRepo.findLastMessageByChatId(chat.getChatId());
-//            if (lastMessage != null) {
-//                dto.setLastMessage(lastMessage.getMessageContent());
-//            }
-            return dto;
-        }).collect(Collectors.toList());
+        readCursorService.flushUser(username);
+        return activityAggregator.overlay(chatInboxService.getInbox(username));
+    }
+
+    // Buffered; the cursor and unread count reach the database on the next flush
+    public void markRead(String chatId, String username, Long messageId) {
+        if (!membershipCache.isMember(chatId, username)) {
+            throw new RuntimeException("Access denied to this chat");
+        }
+        readCursorService.markRead(username, chatId, messageId);
     }
 
     public ChatRoom getChatRoom(String chatId) {
@@ -221,6 +281,8 @@ public class ChatService {
         if (!chat.hasParticipant(username)) {
             chat.getParticipants().add(user);
             chatRoomRepo.save(chat);
+            membershipCache.invalidate(chatId);
+            chatInboxService.syncChat(chat);
         }
     }
 
@@ -233,6 +295,8 @@ public class ChatService {
 
         chat.getParticipants().removeIf(participant -> participant.getUsername().equals(username));
         chatRoomRepo.save(chat);
+        membershipCache.invalidate(chatId);
+        chatInboxService.syncChat(chat);
     }
 
     @Transactional
@@ -243,6 +307,8 @@ public class ChatService {
         chat.getParticipants().clear();
         chat.getPendingInvitations().clear();
         chatRoomRepo.save(chat);
+        membershipCache.invalidate(chatId);
+        chatInboxService.removeChat(chatId);
     }
 
     public ChatThemeDTO getTheme(String chatId) {
@@ -257,6 +323,7 @@ public class ChatService {
         chat.setThemeIndex(newTheme.getThemeIndex());
         chat.setIsDarkTheme(newTheme.getIsDark());
         chatRoomRepo.save(chat);
+        chatInboxService.updateTheme(chatId, chat.getThemeIndex(), chat.getIsDarkTheme());
         return new ChatThemeDTO(chat.getThemeIndex(), chat.getIsDarkTheme());
     }
 
@@ -272,7 +339,7 @@ public class ChatService {
 
         // Check if user is participant in the chat
         String chatId = message.getChatRoom().getChatId();
-        if (!chatRoomRepo.existsByChatIdAndParticipantUsername(chatId, username)) {
+        if (!membershipCache.isMember(chatId, username)) {
             throw new RuntimeException("Access denied to this chat");
         }
 
@@ -280,6 +347,10 @@ public class ChatService {
         messageRepo.delete(message);
         log.info("Message {} PERMANENTLY deleted by user {} from database", messageId, username);
 
+        // Flushed so the recount no longer sees it, in case it was still unread
+        messageRepo.flush();
+        readCursorService.recountUnread(chatId);
+
         // Update last message if needed
         updateChatLastMessageIfNeeded(chatId, messageId);
 
@@ -290,7 +361,11 @@ public class ChatService {
     private void broadcastMessageDeletion(String chatId, Long messageId) {
         try {
             MessageDeletionBroadcast broadcast = new MessageDeletionBroadcast(messageId, chatId);
-            messagingTemplate.convertAndSend("/topic/chat/" + chatId + "/message-deleted", broadcast);
+            eventBus.publish(ChatEvent.builder()
+                    .type(ChatEvent.Type.MESSAGE_DELETED)
+                    .chatId(chatId)
+                    .payload(broadcast)
+                    .build());
             log.info("Broadcasted message deletion {} to all participants of chat {}", messageId, chatId);
         } catch (Exception e) {
             log.error("Error broadcasting message deletion: {}", e.getMessage());
@@ -346,6 +421,9 @@ public class ChatService {
             // 2. Delete the group itself from database
             chatRoomRepo.delete(chat);
             log.info("✅ PERMANENTLY deleted group {} from database by admin {}", chatId, deletedBy);
+            membershipCache.invalidate(chatId);
+            contactCache.evict(participantUsernames);
+            chatInboxService.removeChat(chatId);
 
             // 3. Broadcast group deletion to all former participants
             broadcastGroupDeletionToParticipants(chatId, participantUsernames, deletedBy);
@@ -383,6 +461,9 @@ public class ChatService {
             // 2. Delete the chat itself from database
             chatRoomRepo.delete(chat);
             log.info("✅ PERMANENTLY deleted individual chat {} from database by user {}", chatId, deletedBy);
+            membershipCache.invalidate(chatId);
+            contactCache.evict(participantUsernames);
+            chatInboxService.removeChat(chatId);
 
             // 3. Broadcast chat deletion to both participants
             broadcastChatDeletionToParticipants(chatId, participantUsernames, deletedBy);
@@ -400,17 +481,13 @@ public class ChatService {
         try {
             ChatDeletionBroadcast broadcast = new ChatDeletionBroadcast(chatId, deletedBy, "admin_deleted");
 
-            // Send to each participant individually
-            for (String username : participantUsernames) {
-                messagingTemplate.convertAndSendToUser(
-                        username,
-                        "/queue/chat-deleted",
-                        broadcast
-                );
-            }
-
-            // Also broadcast to the chat topic for real-time updates
-            messagingTemplate.convertAndSend("/topic/chat/" + chatId + "/chat-deleted", broadcast);
+            // Sent to each participant individually and to the chat topic for real-time updates
+            eventBus.publish(ChatEvent.builder()
+                    .type(ChatEvent.Type.CHAT_DELETED)
+                    .chatId(chatId)
+                    .payload(broadcast)
+                    .recipients(participantUsernames)
+                    .build());
 
             log.info("📢 Broadcasted group deletion {} to {} participants", chatId, participantUsernames.size());
         } catch (Exception e) {
@@ -448,17 +525,13 @@ public class ChatService {
         try {
             ChatDeletionBroadcast broadcast = new ChatDeletionBroadcast(chatId, deletedBy, "user_deleted");
 
-            // Send to each participant individually
-            for (String username : participantUsernames) {
-                messagingTemplate.convertAndSendToUser(
-                        username,
-                        "/queue/chat-deleted",
-                        broadcast
-                );
-            }
-
-            // Also broadcast to the chat topic for real-time updates
-            messagingTemplate.convertAndSend("/topic/chat/" + chatId + "/chat-deleted", broadcast);
+            // Sent to each participant individually and to the chat topic for real-time updates
+            eventBus.publish(ChatEvent.builder()
+                    .type(ChatEvent.Type.CHAT_DELETED)
+                    .chatId(chatId)
+                    .payload(broadcast)
+                    .recipients(participantUsernames)
+                    .build());
 
             log.info("📢 Broadcasted individual chat deletion {} to {} participants", chatId, participantUsernames.size());
         } catch (Exception e) {
@@ -470,7 +543,11 @@ public class ChatService {
         try {
             // This will notify all users that the chat no longer exists
             // Frontend should handle this by removing the chat from their lists
-            messagingTemplate.convertAndSend("/topic/chat/" + chatId + "/chat-deleted", chatId);
+            eventBus.publish(ChatEvent.builder()
+                    .type(ChatEvent.Type.CHAT_DELETED)
+                    .chatId(chatId)
+                    .payload(chatId)
+                    .build());
             log.info("Broadcasted chat deletion {} to all participants", chatId);
         } catch (Exception e) {
             log.error("Error broadcasting chat deletion: {}", e.getMessage());
@@ -478,6 +555,7 @@ public class ChatService {
     }
 
     private void updateChatLastMessageIfNeeded(String chatId, Long deletedMessageId) {
+        activityAggregator.flushChat(chatId);
         ChatRoom chatRoom = chatRoomRepo.findById(chatId)
                 .orElseThrow(() -> new RuntimeException("Chat not found"));
 
@@ -491,6 +569,7 @@ public class ChatService {
             chatRoom.setLastActivity(LocalDateTime.now());
         }
         chatRoomRepo.save(chatRoom);
+        chatInboxService.updateSummary(chatId, chatRoom.getLastMessage(), chatRoom.getLastActivity());
     }
 
     @Transactional
@@ -509,15 +588,19 @@ public class ChatService {
         // Remove user from participants
         chatRoom.getParticipants().removeIf(user -> user.getUsername().equals(username));
         chatRoomRepo.save(chatRoom);
+        membershipCache.invalidate(chatId);
+        contactCache.evict(username);
+        chatRoom.getParticipants().forEach(participant -> contactCache.evict(participant.getUsername()));
+        chatInboxService.syncChat(chatRoom);
 
         log.info("User {} left group {}", username, chatId);
 
-        // Update chat lists for remaining participants
-        updateChatListsForParticipants(chatId, username);
+        // Notify remaining participants through the chat summary topic
+        publishMembershipChange(chatId, username);
     }
 
     public MessageStatsDTO getMessageStats(String chatId, String username) {
-        if (!chatRoomRepo.existsByChatIdAndParticipantUsername(chatId, username)) {
+        if (!membershipCache.isMember(chatId, username)) {
             throw new RuntimeException("Access denied to this chat");
         }
 
@@ -0,0 +1,51 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.repository.ChatRoomRepo;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Users who share at least one chat with a given user, used for presence fan-out
+@Component
+@RequiredArgsConstructor
+public class ContactCache {
+
+    private final ChatRoomRepo chatRoomRepo;
+
+    @Value("${app.presence.contacts-ttl-ms:600000}")
+    private long ttlMs;
+
+    private final Map<String, CachedContacts> contacts = new ConcurrentHashMap<>();
+
+    @Data
+    @AllArgsConstructor
+    private static class CachedContacts {
+        private Set<String> usernames;
+        private long loadedAt;
+    }
+
+    public Set<String> getContacts(String username) {
+        long now = System.currentTimeMillis();
+        CachedContacts cached = contacts.get(username);
+        if (cached == null || now - cached.getLoadedAt() > ttlMs) {
+            cached = new CachedContacts(Set.copyOf(chatRoomRepo.findContactUsernames(username)), now);
+            contacts.put(username, cached);
+        }
+        return cached.getUsernames();
+    }
+
+    public void evict(String username) {
+        contacts.remove(username);
+    }
+
+    public void evict(Collection<String> usernames) {
+        usernames.forEach(contacts::remove);
+    }
+}
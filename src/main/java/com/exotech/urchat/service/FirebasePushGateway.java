@@ -0,0 +1,36 @@
+package com.exotech.urchat.service;
+
+import com.google.firebase.messaging.*;
+import lombok.RequiredArgsConstructor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class FirebasePushGateway implements PushGateway {
+
+    private final FirebaseMessaging firebaseMessaging;
+
+    @Override
+    public String send(Message message) throws FirebaseMessagingException {
+        return firebaseMessaging.send(message);
+    }
+
+    @Override
+    public Map<String, MessagingErrorCode> sendEachForMulticast(MulticastMessage message, List<String> tokens)
+            throws FirebaseMessagingException {
+        BatchResponse response = firebaseMessaging.sendEachForMulticast(message);
+
+        Map<String, MessagingErrorCode> failures = new HashMap<>();
+        List<SendResponse> responses = response.getResponses();
+        for (int i = 0; i < responses.size(); i++) {
+            SendResponse sendResponse = responses.get(i);
+            if (!sendResponse.isSuccessful()) {
+                FirebaseMessagingException exception = sendResponse.getException();
+                failures.put(tokens.get(i), exception != null ? exception.getMessagingErrorCode() : null);
+            }
+        }
+        return failures;
+    }
+}
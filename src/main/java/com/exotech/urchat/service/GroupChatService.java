@@ -9,7 +9,6 @@ import com.exotech.urchat.repository.MessageRepo;
 import com.exotech.urchat.repository.UserRepo;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -27,11 +26,14 @@ public class GroupChatService {
     private final ChatRoomRepo chatRoomRepo;
     private final MessageRepo messageRepo;
     private final UserRepo userRepo;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChatEventBus eventBus;
     private final MessageDTOConvertor messageDTOConvertor;
     private final ChatDTOConvertor chatDTOConvertor;
     private final ChatService chatService;
     private final NotificationService notificationService;
+    private final ContactCache contactCache;
+    private final ChatMembershipCache membershipCache;
+    private final ChatInboxService chatInboxService;
 
     @Transactional
     public GroupChatRoomDTO createGroup(String name, String adminUsername, List<String> participantUsernames) {
@@ -79,6 +81,7 @@ public class GroupChatService {
             }
         }
         ChatRoom chat =  chatRoomRepo.save(group);
+        chatInboxService.syncChat(chat);
 
         if (!invitedUsernames.isEmpty()) {
             try {
@@ -112,6 +115,7 @@ public class GroupChatService {
             chat.getParticipants().add(user);
         }
         chatRoomRepo.save(chat);
+        membershipChanged(chat);
     }
 
     @Transactional
@@ -170,11 +174,13 @@ public class GroupChatService {
 
         // Save changes if group still has participants
         chatRoomRepo.save(chat);
+        contactCache.evict(username);
+        membershipChanged(chat);
         log.info("✅ User {} left group {}. Remaining participants: {}",
                 username, chatId, chat.getParticipants().size());
 
-        // Update chat lists for all remaining participants
-        updateChatListsForAllParticipants(chatId);
+        // Notify remaining participants through the chat summary topic
+        chatService.publishMembershipChange(chatId, username);
     }
 
     @Transactional
@@ -190,6 +196,9 @@ public class GroupChatService {
             log.info("✅ Deleted {} messages from group {}", deletedMessages, chatId);
 
             // 2. Clear all participants and pending invitations (clean up relationships)
+            membershipCache.invalidate(chatId);
+            chat.getParticipants().forEach(participant -> contactCache.evict(participant.getUsername()));
+            chatInboxService.removeChat(chatId);
             chat.getParticipants().clear();
             chat.getPendingInvitations().clear();
 
@@ -224,56 +233,17 @@ public class GroupChatService {
 
     private void broadcastGroupDeletion(String chatId) {
         try {
-            messagingTemplate.convertAndSend("/topic/chat/" + chatId + "/chat-deleted", chatId);
+            eventBus.publish(ChatEvent.builder()
+                    .type(ChatEvent.Type.CHAT_DELETED)
+                    .chatId(chatId)
+                    .payload(chatId)
+                    .build());
             log.info("Broadcasted group deletion {} to all users", chatId);
         } catch (Exception e) {
             log.error("Error broadcasting group deletion: {}", e.getMessage());
         }
     }
 
-    private void updateChatListsForAllParticipants(String chatId) {
-        try {
-            ChatRoom chat = chatRoomRepo.findByIdWithParticipants(chatId)
-                    .orElseThrow(() -> new RuntimeException("Chat not found"));
-
-            for (User participant : chat.getParticipants()) {
-                updateChatListForUser(participant.getUsername());
-            }
-        } catch (Exception e) {
-            log.error("Error updating chat lists for participants: {}", e.getMessage());
-        }
-    }
-
-    private void updateChatListForUser(String username) {
-        try {
-            List<ChatRoomDTO> updatedChats = getUserChats(username);
-            messagingTemplate.convertAndSendToUser(
-                    username,
-                    "/queue/chats/update",
-                    updatedChats
-            );
-        } catch (Exception e) {
-            log.error("Error updating chat list for user {}: {}", username, e.getMessage());
-        }
-    }
-
-    // Add this method to get user chats
-    private List<ChatRoomDTO> getUserChats(String username) {
-        List<ChatRoom> chats = chatRoomRepo.findByParticipantUsername(username);
-        chats.sort((a, b) -> b.getLastActivity().compareTo(a.getLastActivity()));
-
-        return chats.stream()
-                .map(chat -> {
-                    ChatRoomDTO dto = chatDTOConvertor.convertToChatRoomDTO(chat);
-                    dto.setChatName(chat.getDisplayName(username));
-                    dto.setPfpIndex(chat.getChatPfpIndex(username));
-                    dto.setPfpBg(chat.getChatPfpBg(username));
-                    dto.setLastMessage(chat.getLastMessage());
-                    return dto;
-                })
-                .collect(Collectors.toList());
-    }
-
     @Transactional
     public void inviteToGroup(String chatId, String inviterUsername, String inviteeUsername) {
         ChatRoom chat = chatRoomRepo.findById(chatId)
@@ -318,6 +288,14 @@ public class GroupChatService {
         chat.getParticipants().removeIf(participant -> participant.getUsername().equals(toRemoveUsername));
         chat.getPendingInvitations().removeIf(invitee -> invitee.getUsername().equals(toRemoveUsername));
         chatRoomRepo.save(chat);
+        contactCache.evict(toRemoveUsername);
+        membershipChanged(chat);
+    }
+
+    private void membershipChanged(ChatRoom chat) {
+        membershipCache.invalidate(chat.getChatId());
+        chat.getParticipants().forEach(participant -> contactCache.evict(participant.getUsername()));
+        chatInboxService.syncChat(chat);
     }
 
     public GroupChatRoomDTO getGroupDetails(String chatId, String currentUser) {
@@ -359,6 +337,8 @@ public class GroupChatService {
         chat.setPfpBg(pfpDTO.getPfpBg());
 
         ChatRoom savedChat = chatRoomRepo.save(chat);
+        membershipCache.invalidate(chatId);
+        chatInboxService.syncChat(savedChat);
         return new PfpDTO(savedChat.getPfpIndex(), savedChat.getPfpBg());
     }
 
@@ -372,16 +352,20 @@ public class GroupChatService {
         User newAdmin = userRepo.findByUsername(candidate).orElseThrow();
         chat.setAdmin(newAdmin);
         chatRoomRepo.save(chat);
+        membershipCache.invalidate(chatId);
+        chatInboxService.syncChat(chat);
         return true;
     }
 
     public void deleteGroup(String chatId) {
         chatRoomRepo.deleteById(chatId);
+        membershipCache.invalidate(chatId);
+        chatInboxService.removeChat(chatId);
     }
 
     public void deleteAllGroups(){
         for(ChatRoom chatRoom: chatRoomRepo.findAll()){
-            if(chatRoom.getIsGroup()) chatRoomRepo.deleteById(chatRoom.getChatId());
+            if(chatRoom.getIsGroup()) deleteGroup(chatRoom.getChatId());
         }
     }
 
@@ -21,6 +21,7 @@ public class GroupCleanupService {
     private final ChatRoomRepo chatRoomRepo;
     private final MessageRepo messageRepo;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ChatInboxService chatInboxService;
 
     // Run every hour to check for empty groups
     @Scheduled(cron = "0 0 * * * *") // Every hour
@@ -45,6 +46,7 @@ public class GroupCleanupService {
 
                     // Delete the group
                     chatRoomRepo.delete(group);
+                    chatInboxService.removeChat(group.getChatId());
 
                     log.info("✅ Deleted empty group {} with {} messages",
                             group.getChatId(), deletedMessages);
@@ -0,0 +1,19 @@
+package com.exotech.urchat.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Single-node default: events go straight to this node's sessions
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.events.bus", havingValue = "local", matchIfMissing = true)
+public class LocalChatEventBus implements ChatEventBus {
+
+    private final ChatEventDelivery delivery;
+
+    @Override
+    public void publish(ChatEvent event) {
+        delivery.deliver(event);
+    }
+}
@@ -0,0 +1,23 @@
+package com.exotech.urchat.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Forwards membership changes to every node once they commit; each node's
+// ChatEventDelivery evicts the chat from its ChatMembershipCache
+@Component
+@RequiredArgsConstructor
+public class MembershipInvalidationPublisher {
+
+    private final ChatEventBus eventBus;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMembershipInvalidated(ChatMembershipInvalidatedEvent event) {
+        eventBus.publish(ChatEvent.builder()
+                .type(ChatEvent.Type.MEMBERSHIP_INVALIDATED)
+                .chatId(event.getChatId())
+                .build());
+    }
+}
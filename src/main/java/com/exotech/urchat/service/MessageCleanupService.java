@@ -25,6 +25,8 @@ public class MessageCleanupService {
     private final MessageRepo messageRepo;
     private final ChatRoomRepo chatRoomRepo;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ChatInboxService chatInboxService;
+    private final ReadCursorService readCursorService;
 
     // Run every day at 3 AM
     @Scheduled(cron = "0 35 3 * * ?")
@@ -79,6 +81,8 @@ public class MessageCleanupService {
             }
 
             chatRoomRepo.save(chatRoom);
+            chatInboxService.updateSummary(chatId, chatRoom.getLastMessage(), chatRoom.getLastActivity());
+            readCursorService.recountUnread(chatId);
             log.debug("Updated last message for chat: {}", chatId);
 
         } catch (Exception e) {
@@ -0,0 +1,60 @@
+package com.exotech.urchat.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// (sender, clientMessageId) -> saved messageId for recent sends, so a client retry
+// is answered from memory. Bounded by size and age; the unique constraint on
+// messages covers anything that has already fallen out.
+@Component
+public class MessageDedupCache {
+
+    private final Map<String, Entry> sent;
+    private final long ttlMs;
+
+    private record Entry(Long messageId, long savedAt) {
+    }
+
+    public MessageDedupCache(@Value("${app.messages.dedup-cache-size:50000}") int maxSize,
+                             @Value("${app.messages.dedup-ttl-ms:300000}") long ttlMs) {
+        this.ttlMs = ttlMs;
+        this.sent = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize || isExpired(eldest.getValue());
+            }
+        };
+    }
+
+    public Long get(String senderUsername, String clientMessageId) {
+        String key = key(senderUsername, clientMessageId);
+        synchronized (sent) {
+            Entry entry = sent.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (isExpired(entry)) {
+                sent.remove(key);
+                return null;
+            }
+            return entry.messageId();
+        }
+    }
+
+    public void put(String senderUsername, String clientMessageId, Long messageId) {
+        synchronized (sent) {
+            sent.put(key(senderUsername, clientMessageId), new Entry(messageId, System.currentTimeMillis()));
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.currentTimeMillis() - entry.savedAt() > ttlMs;
+    }
+
+    private String key(String senderUsername, String clientMessageId) {
+        return senderUsername + "|" + clientMessageId;
+    }
+}
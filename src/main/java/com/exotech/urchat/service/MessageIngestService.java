@@ -0,0 +1,188 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.model.Message;
+import com.exotech.urchat.repository.MessageRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Entry point for new messages. With group commit off this is a plain
+// ChatService.sendMessage call. With it on, sends arriving within a few
+// milliseconds of each other share one transaction, so their inserts go out
+// as a single JDBC batch and the commit cost is paid once.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MessageIngestService {
+
+    private final ChatService chatService;
+    private final ChatMembershipCache membershipCache;
+    private final MessageDedupCache dedupCache;
+    private final MessageRepo messageRepo;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.messages.group-commit.enabled:false}")
+    private boolean groupCommitEnabled;
+
+    @Value("${app.messages.group-commit.window-ms:5}")
+    private long windowMs;
+
+    @Value("${app.messages.group-commit.max-batch:100}")
+    private int maxBatch;
+
+    @Value("${app.messages.group-commit.timeout-ms:5000}")
+    private long timeoutMs;
+
+    private final BlockingQueue<PendingSend> queue = new LinkedBlockingQueue<>();
+    private Thread committer;
+
+    @Data
+    @AllArgsConstructor
+    private static class PendingSend {
+        private String senderUsername;
+        private String chatId;
+        private String content;
+        private String clientMessageId;
+        private CompletableFuture<Message> result;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!groupCommitEnabled) {
+            return;
+        }
+        committer = new Thread(this::commitLoop, "message-group-commit");
+        committer.setDaemon(true);
+        committer.start();
+        log.info("✅ Message group commit enabled (window {}ms, max batch {})", windowMs, maxBatch);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (committer != null) {
+            committer.interrupt();
+        }
+        List<PendingSend> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            commit(remaining);
+        }
+    }
+
+    // Id of a message this sender already stored under the same client key, if any.
+    // Checks memory only; the database is consulted once the unique constraint trips.
+    public Long findDuplicate(String senderUsername, String clientMessageId) {
+        if (clientMessageId == null) {
+            return null;
+        }
+        return dedupCache.get(senderUsername, clientMessageId);
+    }
+
+    public Long resolveDuplicate(String senderUsername, String clientMessageId) {
+        if (clientMessageId == null) {
+            return null;
+        }
+        Long messageId = messageRepo.findIdByClientMessageId(senderUsername, clientMessageId).orElse(null);
+        if (messageId != null) {
+            dedupCache.put(senderUsername, clientMessageId, messageId);
+        }
+        return messageId;
+    }
+
+    public Message send(String senderUsername, String chatId, String content, String clientMessageId) {
+        if (clientMessageId != null && clientMessageId.length() > 64) {
+            throw new RuntimeException("Client message id is too long");
+        }
+        Message saved = groupCommitEnabled
+                ? enqueue(senderUsername, chatId, content, clientMessageId)
+                : chatService.sendMessage(senderUsername, chatId, content, clientMessageId);
+        if (clientMessageId != null) {
+            dedupCache.put(senderUsername, clientMessageId, saved.getMessageId());
+        }
+        return saved;
+    }
+
+    private Message enqueue(String senderUsername, String chatId, String content, String clientMessageId) {
+
+        // Reject early so one bad request can't roll back the batch it lands in
+        if (!membershipCache.isMember(chatId, senderUsername)) {
+            throw new RuntimeException("You cannot message in this chat");
+        }
+
+        PendingSend send = new PendingSend(senderUsername, chatId, content, clientMessageId, new CompletableFuture<>());
+        queue.add(send);
+        try {
+            return send.getResult().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out saving message");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while saving message");
+        }
+    }
+
+    private void commitLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<PendingSend> batch = new ArrayList<>();
+                batch.add(queue.take());
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingSend next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void commit(List<PendingSend> batch) {
+        try {
+            List<Message> saved = transactionTemplate.execute(status -> {
+                List<Message> messages = new ArrayList<>(batch.size());
+                for (PendingSend send : batch) {
+                    messages.add(chatService.sendMessage(send.getSenderUsername(), send.getChatId(),
+                            send.getContent(), send.getClientMessageId()));
+                }
+                return messages;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).getResult().complete(saved.get(i));
+            }
+            log.debug("Group-committed {} messages", batch.size());
+        } catch (Exception e) {
+            // Something in the batch failed; retry each send on its own so only the bad one fails
+            log.warn("⚠️ Group commit of {} messages failed, retrying individually: {}", batch.size(), e.getMessage());
+            for (PendingSend send : batch) {
+                try {
+                    send.getResult().complete(chatService.sendMessage(send.getSenderUsername(), send.getChatId(),
+                            send.getContent(), send.getClientMessageId()));
+                } catch (Exception individual) {
+                    send.getResult().completeExceptionally(individual);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.exotech.urchat.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class MessageNotificationEvent {
+    private String chatId;
+    private String senderUsername;
+    private String messageContent;
+    private String chatName; // Group name, or the sender's username for DMs
+    private boolean isGroup;
+    private String pfpIndex;
+    private String pfpBg;
+    // Resolved by the sender's transaction; null means look the chat members up
+    private List<String> recipientUsernames;
+}
@@ -1,15 +1,22 @@
 package com.exotech.urchat.service;
 
-import com.exotech.urchat.model.ChatRoom;
 import com.exotech.urchat.model.User;
-import com.exotech.urchat.repository.ChatRoomRepo;
 import com.exotech.urchat.repository.UserRepo;
 import com.google.firebase.messaging.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -17,9 +24,111 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class NotificationService {
 
-    private final FirebaseMessaging firebaseMessaging;
+    // FCM accepts at most 500 tokens per multicast
+    private static final int MULTICAST_BATCH_SIZE = 500;
+
+    private final PushGateway pushGateway;
     private final UserRepo userRepo;
-    private final ChatRoomRepo chatRoomRepo;
+    private final ChatPresenceRegistry presenceRegistry;
+
+    @Value("${app.notifications.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.notifications.workers:2}")
+    private int workerCount;
+
+    @Value("${app.notifications.coalesce-window-ms:2000}")
+    private long coalesceWindowMs;
+
+    private BlockingQueue<MessageNotificationEvent> queue;
+    private ExecutorService workers;
+    private ScheduledExecutorService coalesceScheduler;
+    private final Map<String, PendingChat> pendingChats = new ConcurrentHashMap<>();
+
+    // Messages of one burst for a single recipient of a chat
+    @Data
+    private static class PendingRecipient {
+        private final User recipient;
+        private int messageCount;
+        // Messages already covered by a push, i.e. the one that opened the window
+        private int pushedCount;
+        private final Set<String> senders = new LinkedHashSet<>();
+        private String lastSender;
+        private String lastContent;
+    }
+
+    // All recipients of one chat with pushes waiting for the coalescing window to close
+    private static class PendingChat {
+        private final Map<String, PendingRecipient> recipients = new HashMap<>();
+        private MessageNotificationEvent latestEvent;
+
+        void add(MessageNotificationEvent event, List<User> eventRecipients, boolean pushed) {
+            latestEvent = event;
+            for (User user : eventRecipients) {
+                PendingRecipient pending = recipients.computeIfAbsent(user.getUsername(), k -> new PendingRecipient(user));
+                pending.setMessageCount(pending.getMessageCount() + 1);
+                if (pushed) {
+                    pending.setPushedCount(pending.getMessageCount());
+                }
+                pending.getSenders().add(event.getSenderUsername());
+                pending.setLastSender(event.getSenderUsername());
+                pending.setLastContent(event.getMessageContent());
+            }
+        }
+
+        // Only recipients who got more messages than they were already pushed
+        Map<CoalescedNotification, List<User>> toNotifications() {
+            Map<CoalescedNotification, List<User>> grouped = new HashMap<>();
+            for (PendingRecipient pending : recipients.values()) {
+                if (pending.getMessageCount() <= pending.getPushedCount()) {
+                    continue;
+                }
+                CoalescedNotification notification = new CoalescedNotification(
+                        latestEvent.getChatId(),
+                        latestEvent.getChatName(),
+                        latestEvent.isGroup(),
+                        latestEvent.getPfpIndex(),
+                        latestEvent.getPfpBg(),
+                        pending.getLastSender(),
+                        pending.getLastContent(),
+                        pending.getMessageCount(),
+                        pending.getSenders().size() - 1
+                );
+                grouped.computeIfAbsent(notification, k -> new ArrayList<>()).add(pending.getRecipient());
+            }
+            return grouped;
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class CoalescedNotification {
+        private String chatId;
+        private String chatName;
+        private boolean isGroup;
+        private String pfpIndex;
+        private String pfpBg;
+        private String lastSender;
+        private String lastContent;
+        private int messageCount;
+        private int otherSenders;
+
+        static CoalescedNotification of(MessageNotificationEvent event) {
+            return new CoalescedNotification(event.getChatId(), event.getChatName(), event.isGroup(),
+                    event.getPfpIndex(), event.getPfpBg(), event.getSenderUsername(), event.getMessageContent(), 1, 0);
+        }
+
+        String getBody() {
+            if (messageCount == 1) {
+                return isGroup ? lastSender + ": " + lastContent : lastContent;
+            }
+            if (otherSenders == 0) {
+                return messageCount + " new messages from " + lastSender;
+            }
+            return messageCount + " new messages from " + lastSender + " and " + otherSenders
+                    + (otherSenders == 1 ? " other" : " others");
+        }
+    }
 
     public void saveFcmToken(String username, String fcmToken) {
         User user = userRepo.findByUsername(username)
@@ -29,206 +138,220 @@ public class NotificationService {
         log.info("✅ FCM token saved for user: {}", username);
     }
 
-    public void sendMessageNotification(String chatId, String senderUsername,
-                                        String messageContent, String chatName, boolean isGroup) {
-        try {
-            ChatRoom chatRoom = chatRoomRepo.findById(chatId)
-                    .orElseThrow(() -> new RuntimeException("Chat room not found"));
-
-            if (!isGroup) {
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessageSent(MessageNotificationEvent event) {
+        sendMessageNotification(event);
+    }
 
-                sendDMNotification(chatId, senderUsername, messageContent, chatName, chatRoom);
-            } else {
+    public void sendMessageNotification(MessageNotificationEvent event) {
+        if (!queue.offer(event)) {
+            log.warn("⚠️ Notification queue full, dropping push for chat {}", event.getChatId());
+        }
+    }
 
-                sendGroupNotification(chatId, senderUsername, messageContent, chatName, chatRoom);
-            }
-        } catch (Exception e) {
-            log.error("❌ Error sending notification: {}", e.getMessage());
+    @PostConstruct
+    public void startWorkers() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "fcm-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::drainQueue);
         }
+        coalesceScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fcm-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("✅ Started {} notification workers (queue capacity {})", workerCount, queueCapacity);
     }
 
-    private void sendDMNotification(String chatId, String senderUsername,
-                                    String messageContent, String chatName, ChatRoom chatRoom) {
-        try {
-            User recipient = chatRoom.getParticipants().stream()
-                    .filter(user -> !user.getUsername().equals(senderUsername))
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("Recipient not found in DM"));
-
-            if (recipient.getUsername().equals(senderUsername)) {
-                log.info("🔕 Skipping self-notification for user: {}", senderUsername);
-                return;
-            }
+    @PreDestroy
+    public void stopWorkers() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+        if (coalesceScheduler != null) {
+            coalesceScheduler.shutdown();
+        }
+        // Do not lose bursts that were still inside their window
+        pendingChats.keySet().forEach(this::flushChat);
+    }
 
-            if (recipient.getFcmToken() != null && !recipient.getFcmToken().isEmpty()) {
-                sendDMNotificationToUser(recipient, chatId, senderUsername, messageContent, chatRoom);
+    private void drainQueue() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                deliver(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("❌ Error sending notification: {}", e.getMessage());
             }
-        } catch (Exception e) {
-            log.error("❌ Error sending DM notification: {}", e.getMessage());
         }
     }
 
-    private void sendGroupNotification(String chatId, String senderUsername,
-                                       String messageContent, String chatName, ChatRoom chatRoom) {
-        try {
-            List<User> recipients = userRepo.findByChatRoomsChatIdAndUsernameNot(chatId, senderUsername);
-
-            recipients = recipients.stream()
-                    .filter(user -> !user.getUsername().equals(senderUsername))
-                    .collect(Collectors.toList());
-
-            int successfulSends = 0;
-            int failedSends = 0;
+    // Push suppression only sees sessions on this node (the sender's). A recipient viewing
+    // the chat through another node still gets a push: an extra notification, never a missed one.
+    void deliver(MessageNotificationEvent event) {
+        List<User> recipients = loadRecipients(event).stream()
+                .filter(user -> user.getFcmToken() != null && !user.getFcmToken().isEmpty())
+                .filter(user -> !presenceRegistry.isViewingChat(user.getUsername(), event.getChatId()))
+                .collect(Collectors.toList());
+
+        if (coalesceWindowMs <= 0) {
+            sendToRecipients(CoalescedNotification.of(event), recipients);
+            return;
+        }
 
-            for (User recipient : recipients) {
-                if (recipient.getFcmToken() != null && !recipient.getFcmToken().isEmpty()) {
-                    boolean success = sendGroupNotificationToUser(recipient, chatId, senderUsername, messageContent, chatName, chatRoom);
-                    if (success) {
-                        successfulSends++;
-                    } else {
-                        failedSends++;
-                    }
-                }
+        // The first message of a burst is pushed right away and opens the window. Later ones only
+        // bump the per-recipient counters and go out as one summary when the window closes,
+        // replacing the first push on the device through the shared collapse key.
+        boolean[] opened = new boolean[1];
+        pendingChats.compute(event.getChatId(), (chatId, pending) -> {
+            if (pending == null) {
+                pending = new PendingChat();
+                opened[0] = true;
+                coalesceScheduler.schedule(() -> flushChat(chatId), coalesceWindowMs, TimeUnit.MILLISECONDS);
             }
-            log.info("📤 Group notification summary - Chat: {}, Successful: {}, Failed: {}",
-                    chatName, successfulSends, failedSends);
-
-        } catch (Exception e) {
-            log.error("❌ Error sending group notification: {}", e.getMessage());
+            pending.add(event, recipients, opened[0]);
+            return pending;
+        });
+        if (opened[0]) {
+            sendToRecipients(CoalescedNotification.of(event), recipients);
         }
     }
 
-    private void sendDMNotificationToUser(User recipient, String chatId, String senderUsername,
-                                          String messageContent, ChatRoom chatRoom) {
-        try {
-
-            String displayName = chatRoom.getDisplayName(recipient.getUsername());
-            String pfpIndex = chatRoom.getChatPfpIndex(recipient.getUsername());
-            String pfpBg = chatRoom.getChatPfpBg(recipient.getUsername());
-
-            String groupKey = "chat_" + chatId;
-
-            AndroidNotification androidNotification = AndroidNotification.builder()
-                    .setIcon("ic_notification")
-                    .setColor("#4CAF50")
-                    .setSound("default")
-//                    .setTag(groupKey)
-                    .build();
-
-            AndroidConfig androidConfig = AndroidConfig.builder()
-                    .setPriority(AndroidConfig.Priority.HIGH)
-                    .setNotification(androidNotification)
-//                    .setCollapseKey(groupKey)
-                    .build();
-
-            Message message = Message.builder()
-                    .setToken(recipient.getFcmToken())
-                    .setNotification(Notification.builder()
-                            .setTitle(senderUsername)
-                            .setBody(messageContent)
-                            .build())
-                    .setAndroidConfig(androidConfig)
-                    .setApnsConfig(ApnsConfig.builder()
-                            .setAps(Aps.builder()
-                                    .setBadge(1)
-                                    .setSound("default")
-                                    .build())
-                            .build())
-                    .setWebpushConfig(WebpushConfig.builder()
-                            .setNotification(WebpushNotification.builder()
-                                    .setTitle(senderUsername)
-                                    .setBody(messageContent)
-                                    .setIcon("/icons/icon-192x192.png")
-                                    .setBadge("/icons/badge-72x72.png")
-//                                    .setTag("urchat-" + chatId)
-                                    .build())
-                            .build())
-                    .putData("chatId", chatId)
-                    .putData("sender", senderUsername)
-                    .putData("message", messageContent)
-                    .putData("chatName", displayName)
-                    .putData("pfpIndex", pfpIndex)
-                    .putData("pfpBg", pfpBg)
-                    .putData("isGroup", "false")
-                    .putData("type", "NEW_MESSAGE")
-                    .build();
-
-            String response = firebaseMessaging.send(message);
-            log.info("📤 DM notification sent to {} from {}: {}", recipient.getUsername(), senderUsername, response);
-        } catch (FirebaseMessagingException e) {
-            log.error("❌ Failed to send DM notification to {}: {}", recipient.getUsername(), e.getMessage());
-            handleInvalidToken(recipient, e);
+    // Users with the chat open are dropped before the lookup, so they are never loaded
+    private List<User> loadRecipients(MessageNotificationEvent event) {
+        if (event.getRecipientUsernames() == null) {
+            return userRepo.findByChatRoomsChatIdAndUsernameNot(event.getChatId(), event.getSenderUsername());
         }
+        List<String> usernames = event.getRecipientUsernames().stream()
+                .filter(username -> !presenceRegistry.isViewingChat(username, event.getChatId()))
+                .collect(Collectors.toList());
+        return usernames.isEmpty() ? List.of() : userRepo.findAllByUsernames(usernames);
     }
 
-    private boolean sendGroupNotificationToUser(User recipient, String chatId, String senderUsername,
-                                                String messageContent, String chatName, ChatRoom chatRoom) {
+    private void flushChat(String chatId) {
         try {
+            PendingChat pending = pendingChats.remove(chatId);
+            if (pending != null) {
+                // Recipients that saw the same burst get identical text and share multicast batches.
+                // Anyone who opened the chat during the window has already seen the messages.
+                pending.toNotifications().forEach((notification, recipients) -> sendToRecipients(notification,
+                        recipients.stream()
+                                .filter(user -> !presenceRegistry.isViewingChat(user.getUsername(), chatId))
+                                .collect(Collectors.toList())));
+            }
+        } catch (Exception e) {
+            log.error("❌ Error flushing notifications for chat {}: {}", chatId, e.getMessage());
+        }
+    }
 
-            String pfpIndex = chatRoom.getChatPfpIndex(recipient.getUsername());
-            String pfpBg = chatRoom.getChatPfpBg(recipient.getUsername());
+    private void sendToRecipients(CoalescedNotification notification, List<User> recipients) {
+        int successfulSends = 0;
+        int failedSends = 0;
 
-            String groupKey = "chat_" + chatId;
+        for (int from = 0; from < recipients.size(); from += MULTICAST_BATCH_SIZE) {
+            List<User> batch = recipients.subList(from, Math.min(from + MULTICAST_BATCH_SIZE, recipients.size()));
+            int failures = sendMulticastBatch(notification, batch);
+            successfulSends += batch.size() - failures;
+            failedSends += failures;
+        }
 
-            AndroidNotification androidNotification = AndroidNotification.builder()
-                    .setIcon("ic_notification")
-                    .setColor("#4CAF50")
-                    .setSound("default")
-//                    .setTag(groupKey)
-                    .build();
+        log.info("📤 Notification summary - Chat: {}, Messages: {}, Successful: {}, Failed: {}",
+                notification.getChatName(), notification.getMessageCount(), successfulSends, failedSends);
+    }
 
-            AndroidConfig androidConfig = AndroidConfig.builder()
-                    .setPriority(AndroidConfig.Priority.HIGH)
-                    .setNotification(androidNotification)
-//                    .setCollapseKey(groupKey)
-                    .build();
+    private int sendMulticastBatch(CoalescedNotification notification, List<User> batch) {
+        Map<String, User> recipientsByToken = new HashMap<>();
+        for (User recipient : batch) {
+            recipientsByToken.put(recipient.getFcmToken(), recipient);
+        }
+        List<String> tokens = new ArrayList<>(recipientsByToken.keySet());
 
-            Message message = Message.builder()
-                    .setToken(recipient.getFcmToken())
-                    .setNotification(Notification.builder()
-                            .setTitle(chatName)
-                            .setBody(senderUsername + ": " + messageContent)
-                            .build())
-                    .setAndroidConfig(androidConfig)
-                    .setApnsConfig(ApnsConfig.builder()
-                            .setAps(Aps.builder()
-                                    .setBadge(1)
-                                    .setSound("default")
-                                    .build())
-                            .build())
-                    .setWebpushConfig(WebpushConfig.builder()
-                            .setNotification(WebpushNotification.builder()
-                                    .setTitle(chatName)
-                                    .setBody(senderUsername + ": " + messageContent)
-                                    .setIcon("/icons/icon-192x192.png")
-                                    .setBadge("/icons/badge-72x72.png")
-//                                    .setTag("urchat-" + chatId)
-                                    .build())
-                            .build())
-                    .putData("chatId", chatId)
-                    .putData("sender", senderUsername)
-                    .putData("message", messageContent)
-                    .putData("chatName", chatName)
-                    .putData("pfpIndex", pfpIndex)
-                    .putData("pfpBg", pfpBg)
-                    .putData("isGroup", "true")
-                    .putData("type", "NEW_MESSAGE")
-                    .build();
+        try {
+            Map<String, MessagingErrorCode> failures =
+                    pushGateway.sendEachForMulticast(buildMessageNotification(notification, tokens), tokens);
 
-            String response = firebaseMessaging.send(message);
-            log.debug("✅ Group notification sent to {} for group {}: {}",
-                    recipient.getUsername(), chatName, response);
-            return true;
+            failures.forEach((token, errorCode) -> handleInvalidToken(recipientsByToken.get(token), errorCode));
+            return failures.size();
         } catch (FirebaseMessagingException e) {
-            log.error("❌ Failed to send group notification to {}: {}", recipient.getUsername(), e.getMessage());
-            handleInvalidToken(recipient, e);
-            return false;
+            log.error("❌ Failed to send notification batch for chat {}: {}", notification.getChatId(), e.getMessage());
+            return tokens.size();
         }
     }
 
+    private MulticastMessage buildMessageNotification(CoalescedNotification notification, List<String> tokens) {
+        String title = notification.isGroup() ? notification.getChatName() : notification.getLastSender();
+        String body = notification.getBody();
+
+        // Same key for every push of a chat, so a newer summary replaces the previous one on the device
+        String groupKey = "chat_" + notification.getChatId();
+
+        AndroidNotification androidNotification = AndroidNotification.builder()
+                .setIcon("ic_notification")
+                .setColor("#4CAF50")
+                .setSound("default")
+                .setTag(groupKey)
+                .build();
+
+        AndroidConfig androidConfig = AndroidConfig.builder()
+                .setPriority(AndroidConfig.Priority.HIGH)
+                .setNotification(androidNotification)
+                .setCollapseKey(groupKey)
+                .build();
+
+        return MulticastMessage.builder()
+                .addAllTokens(tokens)
+                .setNotification(Notification.builder()
+                        .setTitle(title)
+                        .setBody(body)
+                        .build())
+                .setAndroidConfig(androidConfig)
+                .setApnsConfig(ApnsConfig.builder()
+                        .putHeader("apns-collapse-id", groupKey)
+                        .setAps(Aps.builder()
+                                .setBadge(notification.getMessageCount())
+                                .setSound("default")
+                                .setThreadId(groupKey)
+                                .build())
+                        .build())
+                .setWebpushConfig(WebpushConfig.builder()
+                        .setNotification(WebpushNotification.builder()
+                                .setTitle(title)
+                                .setBody(body)
+                                .setIcon("/icons/icon-192x192.png")
+                                .setBadge("/icons/badge-72x72.png")
+                                .setTag("urchat-" + notification.getChatId())
+                                .setRenotify(true)
+                                .build())
+                        .build())
+                .putData("chatId", notification.getChatId())
+                .putData("sender", notification.getLastSender())
+                .putData("message", notification.getLastContent())
+                .putData("messageCount", String.valueOf(notification.getMessageCount()))
+                .putData("chatName", notification.getChatName())
+                .putData("pfpIndex", notification.getPfpIndex())
+                .putData("pfpBg", notification.getPfpBg())
+                .putData("isGroup", String.valueOf(notification.isGroup()))
+                .putData("type", "NEW_MESSAGE")
+                .build();
+    }
+
     private void handleInvalidToken(User user, FirebaseMessagingException e) {
-        if (e.getMessagingErrorCode() == MessagingErrorCode.INVALID_ARGUMENT ||
-                e.getMessagingErrorCode() == MessagingErrorCode.UNREGISTERED) {
+        handleInvalidToken(user, e.getMessagingErrorCode());
+    }
+
+    private void handleInvalidToken(User user, MessagingErrorCode errorCode) {
+        if (user == null) {
+            return;
+        }
+        if (errorCode == MessagingErrorCode.INVALID_ARGUMENT ||
+                errorCode == MessagingErrorCode.UNREGISTERED) {
             user.setFcmToken(null);
             userRepo.save(user);
             log.info("🗑️ Removed invalid FCM token for user: {}", user.getUsername());
@@ -297,7 +420,7 @@ public class NotificationService {
                     .putData("timestamp", String.valueOf(System.currentTimeMillis()))
                     .build();
 
-            String response = firebaseMessaging.send(message);
+            String response = pushGateway.send(message);
             log.debug("✅ Group invitation sent to {} for group: {}", user.getUsername(), groupName);
             return true;
 
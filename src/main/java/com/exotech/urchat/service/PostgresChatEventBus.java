@@ -0,0 +1,202 @@
+package com.exotech.urchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Fans chat events out to every app instance through Postgres LISTEN/NOTIFY, so several
+// nodes can share one database without a separate broker. Local sessions are served
+// straight away; other nodes receive the NOTIFY once it commits in its own transaction.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.events.bus", havingValue = "postgres")
+public class PostgresChatEventBus implements ChatEventBus {
+
+    private static final String CHANNEL = "chat_events";
+    // NOTIFY payloads are capped at 8000 bytes by Postgres
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final String INSERT_PAYLOAD_SQL =
+            "INSERT INTO chat_event_payloads (payload, created_at) VALUES (?, ?)";
+    private static final String SELECT_PAYLOAD_SQL = "SELECT payload FROM chat_event_payloads WHERE id = ?";
+    private static final String DELETE_PAYLOADS_SQL = "DELETE FROM chat_event_payloads WHERE created_at < ?";
+
+    private final ChatEventDelivery delivery;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+    // publish() is often called after the caller's transaction has committed (AFTER_COMMIT
+    // listeners, afterCommit callbacks) while its connection is still bound. A NOTIFY run there
+    // is outside any transaction Spring will commit, so each one gets a transaction of its own.
+    private final TransactionTemplate notifyTransaction;
+
+    @Value("${app.events.postgres.poll-ms:500}")
+    private int pollMs;
+
+    @Value("${app.events.postgres.reconnect-ms:5000}")
+    private long reconnectMs;
+
+    @Value("${app.events.postgres.payload-retention-ms:60000}")
+    private long payloadRetentionMs;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private volatile boolean running;
+    private Thread listener;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Envelope {
+        private String node;
+        private ChatEvent event;
+        // Set instead of event when the event is stored in chat_event_payloads
+        private Long payloadId;
+    }
+
+    public PostgresChatEventBus(ChatEventDelivery delivery, JdbcTemplate jdbcTemplate, DataSource dataSource,
+                                ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.delivery = delivery;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.notifyTransaction = new TransactionTemplate(transactionManager);
+        this.notifyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        listener = new Thread(this::listen, "chat-events-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    @Override
+    public void publish(ChatEvent event) {
+        delivery.deliver(event);
+        try {
+            String json = toJson(new Envelope(nodeId, event, null));
+            notifyTransaction.executeWithoutResult(status -> {
+                // Too large for NOTIFY: store it and send the row id, committed together with the NOTIFY
+                String notification = json.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES
+                        ? toJson(new Envelope(nodeId, null, storePayload(json)))
+                        : json;
+                jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) rs -> null, CHANNEL, notification);
+            });
+        } catch (Exception e) {
+            log.error("❌ Error publishing {} for chat {}: {}", event.getType(), event.getChatId(), e.getMessage());
+        }
+    }
+
+    // Every listener has read its notification long before this, so stored events are only kept a while
+    @Scheduled(fixedDelayString = "${app.events.postgres.payload-retention-ms:60000}")
+    public void deleteExpiredPayloads() {
+        try {
+            int deleted = jdbcTemplate.update(DELETE_PAYLOADS_SQL, LocalDateTime.now().minus(Duration.ofMillis(payloadRetentionMs)));
+            if (deleted > 0) {
+                log.debug("🧹 Deleted {} stored chat events", deleted);
+            }
+        } catch (Exception e) {
+            log.error("❌ Error deleting stored chat events: {}", e.getMessage());
+        }
+    }
+
+    private long storePayload(String json) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_PAYLOAD_SQL, new String[]{"id"});
+            statement.setString(1, json);
+            statement.setObject(2, LocalDateTime.now());
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    private String toJson(Envelope envelope) {
+        try {
+            return objectMapper.writeValueAsString(envelope);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not serialize chat event", e);
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("✅ Listening for chat events on node {}", nodeId);
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollMs);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.error("❌ Chat event listener failed, reconnecting in {}ms: {}", reconnectMs, e.getMessage());
+                try {
+                    Thread.sleep(reconnectMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(String json) {
+        try {
+            Envelope envelope = objectMapper.readValue(json, Envelope.class);
+            // Our own events were already delivered when they were published
+            if (nodeId.equals(envelope.getNode())) {
+                return;
+            }
+            if (envelope.getPayloadId() != null) {
+                String stored = jdbcTemplate.queryForObject(SELECT_PAYLOAD_SQL, String.class, envelope.getPayloadId());
+                envelope = objectMapper.readValue(stored, Envelope.class);
+            }
+            delivery.deliver(envelope.getEvent());
+        } catch (Exception e) {
+            log.error("❌ Error reading chat event: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.dto.webSocketDTOs.UserPresence;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Online/away/offline broadcasts driven by this node's ChatPresenceRegistry. With several
+// nodes, a user connected to two of them can be reported offline by one while still online
+// on the other; clients treat presence as a hint and the next broadcast corrects it.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PresenceService {
+
+    public static final String ONLINE = "online";
+    public static final String AWAY = "away";
+    public static final String OFFLINE = "offline";
+
+    private final ChatPresenceRegistry presenceRegistry;
+    private final ContactCache contactCache;
+    private final BroadcastSerializer broadcastSerializer;
+
+    @Value("${app.presence.offline-debounce-ms:5000}")
+    private long offlineDebounceMs;
+
+    private final Map<String, ScheduledFuture<?>> pendingOffline = new ConcurrentHashMap<>();
+    private final Map<String, String> awayUsers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-debounce");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public void sessionConnected(String username, String sessionId) {
+        if (!presenceRegistry.sessionConnected(username, sessionId)) {
+            return;
+        }
+        ScheduledFuture<?> offline = pendingOffline.remove(username);
+        if (offline != null && offline.cancel(false)) {
+            // Reconnected inside the debounce window, contacts never saw the user go offline
+            log.debug("Suppressed presence flap for user {}", username);
+            return;
+        }
+        publish(username, ONLINE);
+    }
+
+    public void sessionDisconnected(String username, String sessionId) {
+        if (!presenceRegistry.sessionDisconnected(username, sessionId)) {
+            return;
+        }
+        // The task only clears its own entry; a newer disconnect may have replaced it by the time it runs
+        CompletableFuture<ScheduledFuture<?>> self = new CompletableFuture<>();
+        ScheduledFuture<?> offline = scheduler.schedule(() -> {
+            pendingOffline.remove(username, self.join());
+            if (!presenceRegistry.isOnline(username)) {
+                awayUsers.remove(username);
+                publish(username, OFFLINE);
+                contactCache.evict(username);
+            }
+        }, offlineDebounceMs, TimeUnit.MILLISECONDS);
+        pendingOffline.put(username, offline);
+        self.complete(offline);
+    }
+
+    public void updateStatus(String username, String status) {
+        if (!presenceRegistry.isOnline(username)) {
+            return;
+        }
+        boolean changed = AWAY.equals(status)
+                ? awayUsers.put(username, AWAY) == null
+                : awayUsers.remove(username) != null;
+        if (changed) {
+            publish(username, getStatus(username));
+        }
+    }
+
+    public String getStatus(String username) {
+        if (!presenceRegistry.isOnline(username)) {
+            return OFFLINE;
+        }
+        return awayUsers.containsKey(username) ? AWAY : ONLINE;
+    }
+
+    public List<UserPresence> getContactPresence(String username) {
+        return contactCache.getContacts(username).stream()
+                .filter(presenceRegistry::isOnline)
+                .map(contact -> new UserPresence(contact, getStatus(contact)))
+                .toList();
+    }
+
+    // Only contacts with a live session can receive it, so offline contacts are skipped
+    private void publish(String username, String status) {
+        try {
+            Set<String> contacts = contactCache.getContacts(username);
+            Message<byte[]> presence = broadcastSerializer.serialize(new UserPresence(username, status));
+            int delivered = 0;
+
+            for (String contact : contacts) {
+                if (presenceRegistry.isOnline(contact)) {
+                    broadcastSerializer.sendToUser(contact, "/queue/presence", presence);
+                    delivered++;
+                }
+            }
+            log.debug("Published presence {} for user {} to {} contacts", status, username, delivered);
+        } catch (Exception e) {
+            log.error("❌ Error publishing presence for user {}: {}", username, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.exotech.urchat.service;
+
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.MulticastMessage;
+
+import java.util.List;
+import java.util.Map;
+
+public interface PushGateway {
+
+    String send(Message message) throws FirebaseMessagingException;
+
+    // tokens must be the tokens the multicast message was built with.
+    // Returns the tokens that failed, mapped to their FCM error code (may be null).
+    Map<String, MessagingErrorCode> sendEachForMulticast(MulticastMessage message, List<String> tokens)
+            throws FirebaseMessagingException;
+}
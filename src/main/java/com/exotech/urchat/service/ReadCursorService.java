@@ -0,0 +1,125 @@
+package com.exotech.urchat.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Write-behind buffer for read receipts. Receipts only move an in-memory cursor;
+// the newest cursor per (user, chat) is written to chat_inbox in one JDBC batch
+// every few seconds, together with the recomputed unread count. Pending chat activity
+// is flushed first, or its unread increments would later count messages the recount
+// already includes. Cursors are ordered by (timestamp, message_id), like history
+// pages: pooled ids from several nodes are not in time order.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReadCursorService {
+
+    // Messages from others after the row's cursor; correlated on chat_inbox i
+    private static final String UNREAD_AFTER_CURSOR =
+            "(SELECT COUNT(*) FROM messages m WHERE m.chat_id = i.chat_id AND m.sender_username <> i.username " +
+            "AND (i.last_read_at IS NULL OR m.timestamp > i.last_read_at " +
+            "OR (m.timestamp = i.last_read_at AND m.message_id > i.last_read_message_id)))";
+
+    // Only moves forward, and only to a message of that chat
+    private static final String CURSOR_SQL =
+            "UPDATE chat_inbox i SET last_read_message_id = ?, " +
+            "last_read_at = (SELECT c.timestamp FROM messages c WHERE c.message_id = ?) " +
+            "WHERE i.username = ? AND i.chat_id = ? " +
+            "AND EXISTS (SELECT 1 FROM messages c WHERE c.message_id = ? AND c.chat_id = i.chat_id " +
+            "AND (i.last_read_at IS NULL OR c.timestamp > i.last_read_at " +
+            "OR (c.timestamp = i.last_read_at AND c.message_id > i.last_read_message_id)))";
+    private static final String USER_UNREAD_SQL =
+            "UPDATE chat_inbox i SET unread_count = " + UNREAD_AFTER_CURSOR + " WHERE i.username = ? AND i.chat_id = ?";
+    private static final String CHAT_UNREAD_SQL =
+            "UPDATE chat_inbox i SET unread_count = " + UNREAD_AFTER_CURSOR + " WHERE i.chat_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChatActivityAggregator activityAggregator;
+
+    // username -> chatId -> message ids read since the last flush; the inner map is only
+    // touched inside compute. Ids can't be compared, so the database keeps the newest.
+    private final Map<String, Map<String, Set<Long>>> pending = new ConcurrentHashMap<>();
+
+    public void markRead(String username, String chatId, Long messageId) {
+        if (messageId == null) {
+            return;
+        }
+        pending.compute(username, (user, chats) -> {
+            Map<String, Set<Long>> cursors = chats != null ? chats : new HashMap<>();
+            cursors.computeIfAbsent(chatId, id -> new HashSet<>()).add(messageId);
+            return cursors;
+        });
+    }
+
+    // Called before reading a user's inbox so their own unread counts are never stale
+    public void flushUser(String username) {
+        Map<String, Set<Long>> cursors = pending.remove(username);
+        if (cursors != null) {
+            write(Map.of(username, cursors));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.read-cursors.flush-interval-ms:3000}")
+    @PreDestroy
+    public void flush() {
+        Map<String, Map<String, Set<Long>>> drained = new HashMap<>();
+        for (String username : pending.keySet()) {
+            Map<String, Set<Long>> cursors = pending.remove(username);
+            if (cursors != null) {
+                drained.put(username, cursors);
+            }
+        }
+        write(drained);
+    }
+
+    // For every member of a chat, after messages were deleted from it; joins the caller's transaction
+    public void recountUnread(String chatId) {
+        activityAggregator.flushChat(chatId);
+        jdbcTemplate.update(CHAT_UNREAD_SQL, chatId);
+    }
+
+    private void write(Map<String, Map<String, Set<Long>>> drained) {
+        if (drained.isEmpty()) {
+            return;
+        }
+        List<Object[]> cursors = new ArrayList<>();
+        List<Object[]> counts = new ArrayList<>();
+        Set<String> chatIds = new HashSet<>();
+        drained.forEach((username, chats) -> chats.forEach((chatId, messageIds) -> {
+            messageIds.forEach(messageId -> cursors.add(new Object[]{messageId, messageId, username, chatId, messageId}));
+            counts.add(new Object[]{username, chatId});
+            chatIds.add(chatId);
+        }));
+        activityAggregator.flushChats(chatIds);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(CURSOR_SQL, cursors);
+                jdbcTemplate.batchUpdate(USER_UNREAD_SQL, counts);
+            });
+            log.debug("Flushed {} read cursors", counts.size());
+        } catch (Exception e) {
+            // Nothing was written; put the ids back next to any read since, the newest still wins on the next flush
+            drained.forEach((username, chats) -> pending.compute(username, (user, current) -> {
+                Map<String, Set<Long>> merged = current != null ? current : new HashMap<>();
+                chats.forEach((chatId, messageIds) -> merged.computeIfAbsent(chatId, id -> new HashSet<>()).addAll(messageIds));
+                return merged;
+            }));
+            log.error("❌ Failed to flush {} read cursors, will retry: {}", counts.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.exotech.urchat.service;
+
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.MulticastMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Offline stand-in for FirebaseMessaging, used when app.fcm.enabled=false and in tests
+@Slf4j
+public class StubPushGateway implements PushGateway {
+
+    private final List<Message> sentMessages = new CopyOnWriteArrayList<>();
+    private final List<MulticastMessage> sentMulticasts = new CopyOnWriteArrayList<>();
+    private final List<List<String>> sentBatches = new CopyOnWriteArrayList<>();
+    private final Map<String, MessagingErrorCode> failingTokens = new ConcurrentHashMap<>();
+
+    @Override
+    public String send(Message message) {
+        sentMessages.add(message);
+        log.debug("🧪 Stub push sent single message");
+        return "stub-" + sentMessages.size();
+    }
+
+    @Override
+    public Map<String, MessagingErrorCode> sendEachForMulticast(MulticastMessage message, List<String> tokens) {
+        sentMulticasts.add(message);
+        sentBatches.add(List.copyOf(tokens));
+        log.debug("🧪 Stub push sent multicast to {} tokens", tokens.size());
+
+        Map<String, MessagingErrorCode> failures = new HashMap<>();
+        for (String token : tokens) {
+            if (failingTokens.containsKey(token)) {
+                failures.put(token, failingTokens.get(token));
+            }
+        }
+        return failures;
+    }
+
+    public void failToken(String token, MessagingErrorCode errorCode) {
+        failingTokens.put(token, errorCode);
+    }
+
+    public List<Message> getSentMessages() {
+        return sentMessages;
+    }
+
+    public List<MulticastMessage> getSentMulticasts() {
+        return sentMulticasts;
+    }
+
+    public List<List<String>> getSentBatches() {
+        return sentBatches;
+    }
+}
@@ -34,6 +34,7 @@ public class UserService {
     private final PasswordEncoder passwordEncoder;
     private final UserDTOConvertor userDTOConvertor;
     private final ChatRoomRepo chatRoomRepo;
+    private final ChatInboxService chatInboxService;
 
     @Transactional
     public User createUser(User user){
@@ -97,7 +98,9 @@ public class UserService {
             existingUser.setPfpBg(userUpdate.getPfpBg());
         }
 
-        return userRepo.save(existingUser);
+        User savedUser = userRepo.save(existingUser);
+        chatInboxService.updateUserProfile(savedUser);
+        return savedUser;
     }
 
     @Transactional
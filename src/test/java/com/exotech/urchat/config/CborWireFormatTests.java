@@ -0,0 +1,122 @@
+package com.exotech.urchat.config;
+
+import com.exotech.urchat.dto.chatDTOs.ChatRoomDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CborWireFormatTests {
+
+	private final ObjectMapper jsonMapper = new ObjectMapper()
+			.findAndRegisterModules()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+	private final CborWireFormat wireFormat = new CborWireFormat(jsonMapper);
+
+	@Test
+	void typicalChatListIsSmallerAsCbor() throws Exception {
+		byte[] json = jsonMapper.writeValueAsBytes(chatList());
+		byte[] cbor = wireFormat.toCbor(json);
+
+		// Encode cost, for the assertion message only: JSON encode vs the extra CBOR re-encode
+		int rounds = 2000;
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			jsonMapper.writeValueAsBytes(chatList());
+		}
+		long jsonMicros = (System.nanoTime() - start) / rounds / 1000;
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			wireFormat.toCbor(json);
+		}
+		long cborMicros = (System.nanoTime() - start) / rounds / 1000;
+
+		assertThat(cbor.length)
+				.as("chat list of 50: JSON %d bytes (encode %dus), CBOR %d bytes (re-encode %dus)",
+						json.length, jsonMicros, cbor.length, cborMicros)
+				.isLessThan(json.length);
+		JsonNode decoded = new ObjectMapper(new CBORFactory()).readTree(cbor);
+		assertThat(decoded.get(0).get("lastActivity").isNumber()).isTrue();
+		assertThat(decoded.get(0).get("lastMessage").asText()).isEqualTo("Last message 0");
+	}
+
+	@Test
+	void timestampsAreReadInTheJvmZone() throws Exception {
+		LocalDateTime noon = LocalDateTime.of(2025, 1, 1, 12, 0);
+		byte[] cbor = wireFormat.toCbor(jsonMapper.writeValueAsBytes(chatList()));
+
+		// Same instant the server meant when it stored LocalDateTime.now(), whatever the mapper's TimeZone
+		assertThat(new ObjectMapper(new CBORFactory()).readTree(cbor).get(0).get("lastActivity").asLong())
+				.isEqualTo(noon.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+	}
+
+	@Test
+	void onlyNegotiatedSessionsGetCbor() throws Exception {
+		wireFormat.negotiate(connect("cbor-session", true));
+		wireFormat.negotiate(connect("sockjs-session", false));
+		byte[] json = jsonMapper.writeValueAsBytes(chatList());
+
+		Message<?> cbor = wireFormat.preSend(outbound("cbor-session", json), null);
+		Message<?> sockJs = wireFormat.preSend(outbound("sockjs-session", json), null);
+
+		SimpMessageHeaderAccessor cborHeaders = SimpMessageHeaderAccessor.wrap(cbor);
+		assertThat(cborHeaders.getContentType()).isEqualTo(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+		assertThat(cborHeaders.getFirstNativeHeader(CborWireFormat.FORMAT_HEADER)).isEqualTo(CborWireFormat.CBOR);
+		assertThat((byte[]) cbor.getPayload()).isEqualTo(wireFormat.toCbor(json));
+		assertThat(sockJs.getPayload()).isSameAs(json);
+	}
+
+	private StompHeaderAccessor connect(String sessionId, boolean binaryFrames) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+		accessor.setSessionId(sessionId);
+		accessor.setNativeHeader(CborWireFormat.FORMAT_HEADER, CborWireFormat.CBOR);
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put(CborWireFormat.BINARY_FRAMES_ATTRIBUTE, binaryFrames);
+		accessor.setSessionAttributes(attributes);
+		return accessor;
+	}
+
+	private Message<byte[]> outbound(String sessionId, byte[] json) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setSessionId(sessionId);
+		accessor.setDestination("/user/queue/chats/update");
+		accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+		return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+	}
+
+	private List<ChatRoomDTO> chatList() {
+		List<ChatRoomDTO> chats = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			chats.add(ChatRoomDTO.builder()
+					.chatId("chat-" + i)
+					.chatName("Chat " + i)
+					.isGroup(i % 3 == 0)
+					.lastMessage("Last message " + i)
+					.lastActivity(LocalDateTime.of(2025, 1, 1, 12, 0).plusMinutes(i))
+					.pfpIndex("💬")
+					.pfpBg("#2196F3")
+					.themeIndex(i % 4)
+					.isDark(i % 2 == 0)
+					.unreadCount(i % 5)
+					.build());
+		}
+		return chats;
+	}
+}
@@ -0,0 +1,77 @@
+package com.exotech.urchat.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class FrameBatchingDecoratorFactoryTests {
+
+	private final FrameBatchingDecoratorFactory factory = new FrameBatchingDecoratorFactory();
+	private final WebSocketSession rawSession = mock(WebSocketSession.class);
+	private final Map<String, Object> attributes = new HashMap<>();
+	private WebSocketSession session;
+
+	@BeforeEach
+	void connect() throws Exception {
+		ReflectionTestUtils.setField(factory, "maxBatchChars", 65536);
+		ReflectionTestUtils.setField(factory, "flushThreads", 1);
+		factory.start();
+
+		when(rawSession.getAttributes()).thenReturn(attributes);
+		when(rawSession.isOpen()).thenReturn(true);
+		WebSocketHandler handler = mock(WebSocketHandler.class);
+		factory.decorate(handler).afterConnectionEstablished(rawSession);
+
+		ArgumentCaptor<WebSocketSession> decorated = ArgumentCaptor.forClass(WebSocketSession.class);
+		verify(handler).afterConnectionEstablished(decorated.capture());
+		session = decorated.getValue();
+	}
+
+	@AfterEach
+	void stop() {
+		factory.stop();
+	}
+
+	@Test
+	void framesWithinTheWindowGoOutAsOneMessage() throws Exception {
+		attributes.put(FrameBatchingDecoratorFactory.WINDOW_ATTRIBUTE, 20L);
+
+		session.sendMessage(new TextMessage("MESSAGE\ndestination:/topic/chat/1\n\none\0"));
+		session.sendMessage(new TextMessage("MESSAGE\ndestination:/topic/chat/1/typing\n\ntwo\0"));
+		verify(rawSession, never()).sendMessage(any());
+
+		ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+		verify(rawSession, timeout(1000)).sendMessage(sent.capture());
+		assertThat(sent.getValue().getPayload())
+				.isEqualTo("MESSAGE\ndestination:/topic/chat/1\n\none\0MESSAGE\ndestination:/topic/chat/1/typing\n\ntwo\0");
+	}
+
+	@Test
+	void connectedAdvertisesTheWindow() throws Exception {
+		attributes.put(FrameBatchingDecoratorFactory.WINDOW_ATTRIBUTE, 20L);
+
+		session.sendMessage(new TextMessage("CONNECTED\nversion:1.2\n\n\0"));
+
+		verify(rawSession).sendMessage(new TextMessage("CONNECTED\nx-batch-frames:20\nversion:1.2\n\n\0"));
+	}
+
+	@Test
+	void sessionsThatDidNotOptInAreUntouched() throws Exception {
+		TextMessage frame = new TextMessage("MESSAGE\ndestination:/topic/chat/1\n\none\0");
+
+		session.sendMessage(frame);
+
+		verify(rawSession).sendMessage(frame);
+	}
+}
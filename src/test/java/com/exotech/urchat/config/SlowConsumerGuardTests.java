@@ -0,0 +1,92 @@
+package com.exotech.urchat.config;
+
+import com.exotech.urchat.dto.webSocketDTOs.SessionQueueStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SlowConsumerGuardTests {
+
+	private final SlowConsumerGuard guard = new SlowConsumerGuard();
+	private final WebSocketSession rawSession = mock(WebSocketSession.class);
+	private final CountDownLatch networkStuck = new CountDownLatch(1);
+	private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+	private WebSocketSession session;
+
+	@BeforeEach
+	void connect() throws Exception {
+		ReflectionTestUtils.setField(guard, "sendTimeLimitMs", 10000L);
+		ReflectionTestUtils.setField(guard, "bufferSizeLimit", 300);
+		ReflectionTestUtils.setField(guard, "graceMs", 0L);
+
+		when(rawSession.getId()).thenReturn("s1");
+		when(rawSession.isOpen()).thenReturn(true);
+		// The first write never completes, like a client that stopped reading
+		doAnswer(invocation -> {
+			firstWriteStarted.countDown();
+			networkStuck.await();
+			return null;
+		}).when(rawSession).sendMessage(any());
+
+		WebSocketHandler handler = mock(WebSocketHandler.class);
+		guard.decorate(handler).afterConnectionEstablished(rawSession);
+		ArgumentCaptor<WebSocketSession> decorated = ArgumentCaptor.forClass(WebSocketSession.class);
+		verify(handler).afterConnectionEstablished(decorated.capture());
+		session = decorated.getValue();
+	}
+
+	@AfterEach
+	void stop() {
+		networkStuck.countDown();
+		guard.stop();
+	}
+
+	@Test
+	void staleChatListsAndTypingAreDroppedFirst() throws Exception {
+		session.sendMessage(frame("/topic/chat/1", "first"));
+		assertThat(firstWriteStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+		for (int i = 0; i < 3; i++) {
+			session.sendMessage(frame("/user/queue/chats/update", "list" + i));
+		}
+		session.sendMessage(frame("/topic/chat/1/typing", "typing"));
+		SessionQueueStats afterLists = guard.getQueueStats().get(0);
+		assertThat(afterLists.getQueuedFrames()).isEqualTo(2);
+		assertThat(afterLists.getDroppedFrames()).isEqualTo(2);
+
+		// Past the 300 byte limit the queued typing frame goes, the chat message stays
+		session.sendMessage(frame("/topic/chat/1", "x".repeat(300)));
+		SessionQueueStats overLimit = guard.getQueueStats().get(0);
+		assertThat(overLimit.getQueuedFrames()).isEqualTo(2);
+		assertThat(overLimit.getDroppedFrames()).isEqualTo(3);
+	}
+
+	@Test
+	void sessionsThatStayOverTheLimitAreClosed() throws Exception {
+		session.sendMessage(frame("/topic/chat/1", "first"));
+		assertThat(firstWriteStarted.await(5, TimeUnit.SECONDS)).isTrue();
+		session.sendMessage(frame("/topic/chat/1", "x".repeat(400)));
+		Thread.sleep(5);
+
+		guard.evictSlowConsumers();
+
+		verify(rawSession).close(CloseStatus.SESSION_NOT_RELIABLE);
+		assertThat(guard.getQueueStats()).isEmpty();
+	}
+
+	private TextMessage frame(String destination, String body) {
+		return new TextMessage("MESSAGE\ndestination:" + destination + "\nsubscription:sub-0\n\n" + body + "\0");
+	}
+}
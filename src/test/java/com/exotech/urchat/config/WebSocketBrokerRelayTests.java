@@ -0,0 +1,155 @@
+package com.exotech.urchat.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+// Runs the relay configuration against a minimal STOMP server standing in for RabbitMQ/ActiveMQ
+class WebSocketBrokerRelayTests {
+
+	private StubStompBroker broker;
+	private StompBrokerRelayMessageHandler relay;
+
+	@BeforeEach
+	void startBroker() throws IOException {
+		broker = new StubStompBroker();
+	}
+
+	@AfterEach
+	void stop() throws IOException {
+		if (relay != null) {
+			relay.stop();
+		}
+		broker.close();
+	}
+
+	@Test
+	void relayModeForwardsBroadcastsToTheExternalBroker() throws Exception {
+		MessageBrokerRegistry registry = configure("relay");
+		relay = ReflectionTestUtils.invokeMethod(registry, "getStompBrokerRelay", new ExecutorSubscribableChannel());
+		assertThat(relay).isNotNull();
+		assertThat((String) ReflectionTestUtils.invokeMethod(registry, "getUserDestinationBroadcast"))
+				.isEqualTo("/topic/unresolved-user-destination");
+		assertThat((String) ReflectionTestUtils.invokeMethod(registry, "getUserRegistryBroadcast"))
+				.isEqualTo("/topic/user-registry");
+
+		relay.start();
+
+		String connect = broker.nextFrame();
+		assertThat(connect).startsWith("CONNECT").contains("login:urchat", "passcode:secret", "host:chat");
+		awaitBrokerAvailable();
+
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setDestination("/topic/chat/42");
+		relay.handleMessage(MessageBuilder.createMessage("hello".getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders()));
+
+		String send = broker.nextFrame();
+		assertThat(send).startsWith("SEND").contains("destination:/topic/chat/42").endsWith("hello");
+	}
+
+	@Test
+	void simpleModeKeepsTheInMemoryBroker() {
+		MessageBrokerRegistry registry = configure("simple");
+
+		assertThat((Object) ReflectionTestUtils.invokeMethod(registry, "getStompBrokerRelay", new ExecutorSubscribableChannel())).isNull();
+	}
+
+	private MessageBrokerRegistry configure(String brokerMode) {
+		WebSocketConfig config = new WebSocketConfig(mock(WebSocketAuthInterceptor.class), mock(FrameBatchingDecoratorFactory.class),
+				mock(CborWireFormat.class), mock(SlowConsumerGuard.class));
+		ReflectionTestUtils.setField(config, "brokerMode", brokerMode);
+		ReflectionTestUtils.setField(config, "relayHost", "127.0.0.1");
+		ReflectionTestUtils.setField(config, "relayPort", broker.getPort());
+		ReflectionTestUtils.setField(config, "relayLogin", "urchat");
+		ReflectionTestUtils.setField(config, "relayPasscode", "secret");
+		ReflectionTestUtils.setField(config, "relayVirtualHost", "chat");
+
+		MessageBrokerRegistry registry = new MessageBrokerRegistry(new ExecutorSubscribableChannel(), new ExecutorSubscribableChannel());
+		config.configureMessageBroker(registry);
+		return registry;
+	}
+
+	private void awaitBrokerAvailable() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!relay.isBrokerAvailable() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertThat(relay.isBrokerAvailable()).isTrue();
+	}
+
+	// Accepts one connection, answers CONNECT with CONNECTED (heart-beats off) and records every frame
+	private static class StubStompBroker {
+
+		private final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		private final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+
+		StubStompBroker() throws IOException {
+			Thread acceptor = new Thread(this::serve, "stub-stomp-broker");
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		int getPort() {
+			return server.getLocalPort();
+		}
+
+		String nextFrame() throws InterruptedException {
+			String frame = frames.poll(5, TimeUnit.SECONDS);
+			assertThat(frame).as("frame received by the broker").isNotNull();
+			return frame;
+		}
+
+		void close() throws IOException {
+			server.close();
+		}
+
+		private void serve() {
+			try (Socket socket = server.accept()) {
+				InputStream in = socket.getInputStream();
+				OutputStream out = socket.getOutputStream();
+				ByteArrayOutputStream frame = new ByteArrayOutputStream();
+				int b;
+				while ((b = in.read()) != -1) {
+					if (b != 0) {
+						// Skip heart-beat EOLs between frames
+						if (frame.size() > 0 || (b != '\n' && b != '\r')) {
+							frame.write(b);
+						}
+						continue;
+					}
+					String text = frame.toString(StandardCharsets.UTF_8);
+					frame.reset();
+					frames.add(text);
+					if (text.startsWith("CONNECT") || text.startsWith("STOMP")) {
+						out.write("CONNECTED\nversion:1.2\nheart-beat:0,0\n\n\0".getBytes(StandardCharsets.UTF_8));
+						out.flush();
+					}
+				}
+			} catch (IOException ignored) {
+				// Closed by the test
+			}
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package com.exotech.urchat.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+// Builds the inbound channel the way WebSocketConfig registers it, for each executor mode,
+// with per-session ordering applied as preserveReceiveOrder does. A few sessions are stuck
+// in a push call (the FCM stand-in) until the test releases them, while many other sessions
+// send. Latency p99s are reported in the assertion messages, not asserted.
+class WebSocketExecutorLoadTests {
+
+	private static final Log logger = LogFactory.getLog(WebSocketExecutorLoadTests.class);
+
+	private static final int POOL_SIZE = 4;
+	private static final int SLOW_SESSIONS = 8;
+	private static final int FAST_SESSIONS = 100;
+	private static final int FRAMES_PER_SESSION = 5;
+	private static final String SLOW = "slow-";
+
+	@Test
+	void stompEndpointsPreserveReceiveOrder() {
+		WebSocketConfig config = config(WebSocketConfig.EXECUTOR_PLATFORM);
+		StompEndpointRegistry registry = mock(StompEndpointRegistry.class, RETURNS_DEEP_STUBS);
+		config.registerStompEndpoints(registry);
+
+		ArgumentCaptor<Boolean> preserveReceiveOrder = ArgumentCaptor.forClass(Boolean.class);
+		verify(registry).setPreserveReceiveOrder(preserveReceiveOrder.capture());
+		assertThat(preserveReceiveOrder.getValue()).isTrue();
+	}
+
+	@Test
+	void slowPushesStallUnrelatedSessionsOnlyOnThePlatformPool() throws Exception {
+		LoadResult platform = runLoad(WebSocketConfig.EXECUTOR_PLATFORM);
+		LoadResult virtual = runLoad(WebSocketConfig.EXECUTOR_VIRTUAL);
+		String p99s = String.format("p99 for unrelated sessions: platform(%d threads)=%dms, virtual=%dms",
+				POOL_SIZE, platform.p99Ms(), virtual.p99Ms());
+
+		// Every pool thread is parked in a push, so nothing else can run until they return
+		assertThat(platform.handledWhileBlocked()).as(p99s).isZero();
+		assertThat(virtual.handledWhileBlocked()).as(p99s).isEqualTo(FAST_SESSIONS * FRAMES_PER_SESSION);
+
+		for (LoadResult result : List.of(platform, virtual)) {
+			result.framesBySession().forEach((session, frames) ->
+					assertThat(frames).as("frames of %s in %s mode; %s", session, result.mode(), p99s)
+							.containsExactlyElementsOf(IntStream.range(0, FRAMES_PER_SESSION).boxed().toList()));
+		}
+	}
+
+	private LoadResult runLoad(String mode) throws InterruptedException {
+		WebSocketConfig config = config(mode);
+		ChannelRegistration registration = new ChannelRegistration();
+		config.configureClientInboundChannel(registration);
+
+		// Same lookup the broker configuration does; a registered pool still needs initializing here
+		Supplier<Executor> noFallback = () -> {
+			throw new IllegalStateException("WebSocketConfig registered no inbound executor");
+		};
+		Consumer<Executor> initialize = executor -> {
+			if (executor instanceof ThreadPoolTaskExecutor pool) {
+				pool.setThreadNamePrefix("ws-inbound-");
+				pool.initialize();
+			}
+		};
+		Executor executor = ReflectionTestUtils.invokeMethod(registration, "getExecutor", noFallback, initialize);
+
+		// Only the executor is under test; the auth interceptor is left off
+		ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(executor);
+		OrderedMessageChannelDecorator.configureInterceptor(channel, true);
+
+		Map<String, MessageChannel> sessionChannels = new HashMap<>();
+		Map<String, List<Integer>> framesBySession = new ConcurrentHashMap<>();
+		List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch slowStarted = new CountDownLatch(POOL_SIZE);
+		CountDownLatch releasePushes = new CountDownLatch(1);
+		CountDownLatch fastDone = new CountDownLatch(FAST_SESSIONS * FRAMES_PER_SESSION);
+		CountDownLatch allDone = new CountDownLatch((SLOW_SESSIONS + FAST_SESSIONS) * FRAMES_PER_SESSION);
+
+		channel.subscribe(message -> {
+			try {
+				SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+				String session = accessor.getSessionId();
+				int sequence = (Integer) accessor.getHeader("sequence");
+				framesBySession.computeIfAbsent(session, key -> Collections.synchronizedList(new ArrayList<>())).add(sequence);
+
+				if (session.startsWith(SLOW)) {
+					if (sequence == 0) {
+						slowStarted.countDown();
+						releasePushes.await(30, TimeUnit.SECONDS);
+					}
+				} else {
+					latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - (Long) message.getPayload()));
+					fastDone.countDown();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				allDone.countDown();
+			}
+		});
+
+		long handledWhileBlocked;
+		try {
+			sendSessions(channel, sessionChannels, SLOW, SLOW_SESSIONS);
+			assertThat(slowStarted.await(10, TimeUnit.SECONDS)).as("pushes started in %s mode", mode).isTrue();
+
+			sendSessions(channel, sessionChannels, "fast-", FAST_SESSIONS);
+			if (WebSocketConfig.EXECUTOR_VIRTUAL.equals(mode)) {
+				fastDone.await(30, TimeUnit.SECONDS);
+			}
+			handledWhileBlocked = FAST_SESSIONS * FRAMES_PER_SESSION - fastDone.getCount();
+
+			releasePushes.countDown();
+			assertThat(allDone.await(30, TimeUnit.SECONDS)).as("all frames handled in %s mode", mode).isTrue();
+		} finally {
+			releasePushes.countDown();
+			if (executor instanceof ThreadPoolTaskExecutor pool) {
+				pool.shutdown();
+			}
+		}
+
+		List<Long> sorted = new ArrayList<>(latencies);
+		Collections.sort(sorted);
+		long p99 = sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+		return new LoadResult(mode, p99, handledWhileBlocked, framesBySession);
+	}
+
+	// Each session sends through its own ordered decorator, like StompSubProtocolHandler does
+	private void sendSessions(ExecutorSubscribableChannel channel, Map<String, MessageChannel> sessionChannels,
+							  String prefix, int count) {
+		for (int frame = 0; frame < FRAMES_PER_SESSION; frame++) {
+			for (int session = 0; session < count; session++) {
+				String sessionId = prefix + session;
+				sessionChannels.computeIfAbsent(sessionId, key -> new OrderedMessageChannelDecorator(channel, logger))
+						.send(frame(sessionId, frame));
+			}
+		}
+	}
+
+	private Message<Long> frame(String sessionId, int sequence) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+		accessor.setSessionId(sessionId);
+		accessor.setHeader("sequence", sequence);
+		// The ordered decorator attaches its release task to the headers
+		accessor.setLeaveMutable(true);
+		return MessageBuilder.createMessage(System.nanoTime(), accessor.getMessageHeaders());
+	}
+
+	private WebSocketConfig config(String executorMode) {
+		WebSocketConfig config = new WebSocketConfig(mock(WebSocketAuthInterceptor.class), mock(FrameBatchingDecoratorFactory.class),
+				mock(CborWireFormat.class), mock(SlowConsumerGuard.class));
+		ReflectionTestUtils.setField(config, "executorMode", executorMode);
+		ReflectionTestUtils.setField(config, "inboundPoolSize", POOL_SIZE);
+		ReflectionTestUtils.setField(config, "queueCapacity", 10000);
+		return config;
+	}
+
+	private record LoadResult(String mode, long p99Ms, long handledWhileBlocked, Map<String, List<Integer>> framesBySession) {
+	}
+}
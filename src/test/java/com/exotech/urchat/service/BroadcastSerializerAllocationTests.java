@@ -0,0 +1,114 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.dto.messageDTOs.MessageDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Rough allocation microbenchmark: one MessageDTO broadcast to many user destinations,
+// converted per recipient vs serialized once. Uses the JVM's per-thread allocation counter.
+class BroadcastSerializerAllocationTests {
+
+	private static final int RECIPIENTS = 200;
+	private static final int ROUNDS = 200;
+
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.findAndRegisterModules()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+	private final AtomicReference<Message<?>> lastSent = new AtomicReference<>();
+	private final SimpMessagingTemplate messagingTemplate = template();
+	private final BroadcastSerializer broadcastSerializer = new BroadcastSerializer(objectMapper, messagingTemplate);
+
+	private final List<String> recipients = new ArrayList<>();
+	private final MessageDTO message = MessageDTO.builder()
+			.id(42L)
+			.content("See you at the station in ten minutes, bring the tickets")
+			.sender("alice")
+			.chatId("group1")
+			.timestamp(LocalDateTime.of(2025, 1, 1, 12, 0))
+			.build();
+
+	BroadcastSerializerAllocationTests() {
+		for (int i = 0; i < RECIPIENTS; i++) {
+			recipients.add("user" + i);
+		}
+	}
+
+	@Test
+	void serializingOnceAllocatesLessPerBroadcast() {
+		// Warm both paths up so class loading and serializer lookup aren't counted
+		for (int i = 0; i < 20; i++) {
+			convertPerRecipient();
+			serializeOnce();
+		}
+
+		long before = allocatedPerBroadcast(this::convertPerRecipient);
+		long after = allocatedPerBroadcast(this::serializeOnce);
+		assertThat(after)
+				.as("bytes allocated per broadcast to %d users: convertAndSendToUser=%d, pre-serialized=%d",
+						RECIPIENTS, before, after)
+				.isLessThan(before);
+	}
+
+	@Test
+	void preSerializedBodyMatchesTheConvertedOne() {
+		messagingTemplate.convertAndSendToUser("bob", "/queue/chat-deleted", message);
+		byte[] converted = (byte[]) lastSent.get().getPayload();
+
+		broadcastSerializer.sendToUser("bob", "/queue/chat-deleted", broadcastSerializer.serialize(message));
+		byte[] preSerialized = (byte[]) lastSent.get().getPayload();
+
+		assertThat(preSerialized).isEqualTo(converted);
+	}
+
+	private void convertPerRecipient() {
+		for (String username : recipients) {
+			messagingTemplate.convertAndSendToUser(username, "/queue/chat-deleted", message);
+		}
+	}
+
+	private void serializeOnce() {
+		Message<byte[]> serialized = broadcastSerializer.serialize(message);
+		for (String username : recipients) {
+			broadcastSerializer.sendToUser(username, "/queue/chat-deleted", serialized);
+		}
+	}
+
+	private long allocatedPerBroadcast(Runnable broadcast) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().threadId();
+		long start = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < ROUNDS; i++) {
+			broadcast.run();
+		}
+		return (threads.getThreadAllocatedBytes(threadId) - start) / ROUNDS;
+	}
+
+	private SimpMessagingTemplate template() {
+		MessageChannel channel = (sent, timeout) -> {
+			lastSent.set(sent);
+			return true;
+		};
+		MappingJackson2MessageConverter jackson = new MappingJackson2MessageConverter();
+		jackson.setObjectMapper(objectMapper);
+		SimpMessagingTemplate template = new SimpMessagingTemplate(channel);
+		template.setMessageConverter(new CompositeMessageConverter(
+				List.of(new StringMessageConverter(), new ByteArrayMessageConverter(), jackson)));
+		return template;
+	}
+}
@@ -0,0 +1,245 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.dto.chatDTOs.ChatDTOConvertor;
+import com.exotech.urchat.dto.chatDTOs.ChatRoomDTO;
+import com.exotech.urchat.model.ChatInboxEntry;
+import com.exotech.urchat.model.ChatRoom;
+import com.exotech.urchat.model.Message;
+import com.exotech.urchat.model.User;
+import com.exotech.urchat.repository.ChatInboxRepo;
+import com.exotech.urchat.repository.ChatRoomRepo;
+import com.exotech.urchat.repository.MessageRepo;
+import com.exotech.urchat.repository.UserRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+// Postgres mode with lower-case identifiers, so native SQL runs unchanged. No test transaction:
+// activity is recorded as it is after a send commits, and both flushes write in their own
+// transactions, so the tables are emptied after each test.
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:chat-activity;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.auto_quote_keyword=true",
+		"spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ChatActivityAggregator.class, ReadCursorService.class, ChatInboxService.class, ChatDTOConvertor.class})
+class ChatActivityAggregatorTests {
+
+	@Autowired
+	private ChatActivityAggregator activityAggregator;
+	@Autowired
+	private ReadCursorService readCursorService;
+	@Autowired
+	private ChatInboxService chatInboxService;
+	@Autowired
+	private ChatInboxRepo chatInboxRepo;
+	@Autowired
+	private ChatRoomRepo chatRoomRepo;
+	@Autowired
+	private MessageRepo messageRepo;
+	@Autowired
+	private UserRepo userRepo;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private User alice;
+	private User bob;
+	private ChatRoom chat;
+
+	@BeforeEach
+	void createChat() {
+		alice = userRepo.save(user("alice"));
+		bob = userRepo.save(user("bob"));
+		ChatRoom dm = new ChatRoom();
+		dm.setChatId("dm1");
+		dm.setIsGroup(false);
+		dm.setLastMessage("No messages yet");
+		dm.getParticipants().add(alice);
+		dm.getParticipants().add(bob);
+		chat = chatRoomRepo.save(dm);
+		chatInboxService.syncChat(chatRoomRepo.findByIdWithParticipants("dm1").orElseThrow());
+	}
+
+	@AfterEach
+	void clearTables() {
+		activityAggregator.flush();
+		readCursorService.flush();
+		for (String table : List.of("chat_inbox", "messages", "chat_room_participants", "chat_rooms", "users")) {
+			jdbcTemplate.update("DELETE FROM " + table);
+		}
+	}
+
+	@Test
+	void readingBeforeTheActivityFlushDoesNotCountMessagesTwice() {
+		Message first = send(alice, "hi bob");
+
+		// Bob reads it and opens his chat list before the aggregator has flushed
+		readCursorService.markRead("bob", "dm1", first.getMessageId());
+		List<ChatRoomDTO> bobsChats = openChatList("bob");
+		assertThat(bobsChats.get(0).getLastMessage()).isEqualTo("hi bob");
+		assertThat(bobsChats.get(0).getUnreadCount()).isZero();
+
+		activityAggregator.flush();
+		assertThat(row("bob").getUnreadCount()).isZero();
+		assertThat(row("bob").getLastMessage()).isEqualTo("hi bob");
+		assertThat(openChatList("bob").get(0).getUnreadCount()).isZero();
+
+		// Two more arrive; the activity flush counts them, the cursor flush then subtracts what was read
+		Message second = send(alice, "are you there?");
+		send(alice, "hello?");
+		activityAggregator.flush();
+		assertThat(row("bob").getUnreadCount()).isEqualTo(2);
+
+		readCursorService.markRead("bob", "dm1", second.getMessageId());
+		readCursorService.flush();
+		assertThat(row("bob").getUnreadCount()).isEqualTo(1);
+
+		activityAggregator.flush();
+		assertThat(row("bob").getUnreadCount()).isEqualTo(1);
+		// Senders never count their own messages
+		assertThat(row("alice").getUnreadCount()).isZero();
+	}
+
+	@Test
+	void cursorFlushBeforeActivityFlushGivesTheSameCounts() {
+		Message first = send(alice, "one");
+		send(alice, "two");
+
+		readCursorService.markRead("bob", "dm1", first.getMessageId());
+		readCursorService.flush();
+		assertThat(row("bob").getUnreadCount()).isEqualTo(1);
+
+		activityAggregator.flush();
+		assertThat(row("bob").getUnreadCount()).isEqualTo(1);
+		assertThat(row("bob").getLastMessage()).isEqualTo("two");
+		assertThat(chatRoomRepo.findById("dm1").orElseThrow().getLastMessage()).isEqualTo("two");
+	}
+
+	@Test
+	void eachMemberCountsOnlyTheOthersMessages() {
+		send(alice, "one");
+		send(alice, "two");
+		send(bob, "three");
+		activityAggregator.flush();
+
+		assertThat(row("bob").getUnreadCount()).isEqualTo(2);
+		assertThat(row("alice").getUnreadCount()).isEqualTo(1);
+	}
+
+	@Test
+	void olderDrainNeverOverwritesNewerSummary() {
+		Message older = send(alice, "older");
+		activityAggregator.flush();
+		send(alice, "newer");
+		activityAggregator.flush();
+		assertThat(row("bob").getLastMessage()).isEqualTo("newer");
+
+		// A drain holding the older message lands late, as when flushChat races the scheduled flush
+		activityAggregator.record("dm1", older);
+		activityAggregator.flush();
+
+		assertThat(row("bob").getLastMessage()).isEqualTo("newer");
+		assertThat(chatRoomRepo.findById("dm1").orElseThrow().getLastMessage()).isEqualTo("newer");
+	}
+
+	@Test
+	void failedFlushKeepsActivityForTheNextOne() {
+		JdbcTemplate flaky = spy(jdbcTemplate);
+		doThrow(new DataAccessResourceFailureException("connection lost"))
+				.doCallRealMethod()
+				.when(flaky).batchUpdate(anyString(), anyList());
+		ChatActivityAggregator aggregator = new ChatActivityAggregator(flaky, transactionTemplate);
+
+		aggregator.record("dm1", send(alice, "kept"));
+		aggregator.flush();
+		assertThat(row("bob").getLastMessage()).isEqualTo("No messages yet");
+		assertThat(row("bob").getUnreadCount()).isZero();
+
+		aggregator.flush();
+		assertThat(row("bob").getLastMessage()).isEqualTo("kept");
+		assertThat(row("bob").getUnreadCount()).isEqualTo(1);
+	}
+
+	@Test
+	void failedCursorFlushKeepsCursorsForTheNextOne() {
+		JdbcTemplate flaky = spy(jdbcTemplate);
+		doThrow(new DataAccessResourceFailureException("connection lost"))
+				.doCallRealMethod()
+				.when(flaky).batchUpdate(anyString(), anyList());
+		ReadCursorService cursors = new ReadCursorService(flaky, transactionTemplate, activityAggregator);
+
+		Message first = send(alice, "one");
+		send(alice, "two");
+		activityAggregator.flush();
+		assertThat(row("bob").getUnreadCount()).isEqualTo(2);
+
+		cursors.markRead("bob", "dm1", first.getMessageId());
+		cursors.flush();
+		assertThat(row("bob").getLastReadMessageId()).isNull();
+		assertThat(row("bob").getUnreadCount()).isEqualTo(2);
+
+		cursors.flush();
+		assertThat(row("bob").getLastReadMessageId()).isEqualTo(first.getMessageId());
+		assertThat(row("bob").getUnreadCount()).isEqualTo(1);
+	}
+
+	// What ChatService.sendMessage does once its transaction has committed
+	private Message send(User sender, String content) {
+		Message message = new Message();
+		message.setMessageContent(content);
+		message.setSender(sender);
+		message.setChatRoom(chat);
+		Message saved = messageRepo.save(message);
+		activityAggregator.record("dm1", saved);
+		return saved;
+	}
+
+	// What ChatService.getUserChats does
+	private List<ChatRoomDTO> openChatList(String username) {
+		readCursorService.flushUser(username);
+		return activityAggregator.overlay(chatInboxService.getInbox(username));
+	}
+
+	private ChatInboxEntry row(String username) {
+		return chatInboxRepo.findByChatId("dm1").stream()
+				.filter(entry -> entry.getUsername().equals(username))
+				.findFirst()
+				.orElseThrow();
+	}
+
+	private User user(String username) {
+		return User.builder()
+				.username(username)
+				.email(username + "@example.com")
+				.password("secret")
+				.fullName(username)
+				.build();
+	}
+
+}
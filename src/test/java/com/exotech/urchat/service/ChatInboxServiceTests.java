@@ -0,0 +1,207 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.dto.chatDTOs.ChatDTOConvertor;
+import com.exotech.urchat.dto.chatDTOs.ChatRoomDTO;
+import com.exotech.urchat.model.ChatInboxEntry;
+import com.exotech.urchat.model.ChatRoom;
+import com.exotech.urchat.model.User;
+import com.exotech.urchat.repository.ChatInboxRepo;
+import com.exotech.urchat.repository.ChatRoomRepo;
+import com.exotech.urchat.repository.UserRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Postgres mode with lower-case identifiers, so native SQL runs unchanged
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:chat-inbox;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.auto_quote_keyword=true",
+		"spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ChatInboxService.class, ChatDTOConvertor.class})
+class ChatInboxServiceTests {
+
+	private static final LocalDateTime EARLIER = LocalDateTime.of(2026, 1, 1, 9, 0);
+	private static final LocalDateTime LATER = LocalDateTime.of(2026, 1, 1, 10, 0);
+
+	@Autowired
+	private ChatInboxService chatInboxService;
+	@Autowired
+	private ChatInboxRepo chatInboxRepo;
+	@Autowired
+	private ChatRoomRepo chatRoomRepo;
+	@Autowired
+	private UserRepo userRepo;
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private User alice;
+	private User bob;
+	private User carol;
+
+	@BeforeEach
+	void createUsers() {
+		alice = userRepo.save(user("alice", "🦊", "#FF9800"));
+		bob = userRepo.save(user("bob", "🐻", "#795548"));
+		carol = userRepo.save(user("carol", "🐱", "#E91E63"));
+	}
+
+	@Test
+	void individualChatRowsShowTheOtherParticipant() {
+		chatInboxService.syncChat(individualChat("dm1", alice, bob, EARLIER));
+		reload();
+
+		ChatInboxEntry aliceRow = row("alice", "dm1");
+		assertThat(aliceRow.getDisplayName()).isEqualTo("bob");
+		assertThat(aliceRow.getPeerUsername()).isEqualTo("bob");
+		assertThat(aliceRow.getPfpIndex()).isEqualTo("🐻");
+		assertThat(aliceRow.getIsGroup()).isFalse();
+		assertThat(aliceRow.getLastMessage()).isEqualTo("No messages yet");
+
+		ChatInboxEntry bobRow = row("bob", "dm1");
+		assertThat(bobRow.getDisplayName()).isEqualTo("alice");
+		assertThat(bobRow.getPfpBg()).isEqualTo("#FF9800");
+	}
+
+	@Test
+	void syncAddsJoinersDropsLeaversAndKeepsUnreadCounts() {
+		ChatRoom group = groupChat("group1", EARLIER, alice, bob, carol);
+		chatInboxService.syncChat(group);
+		reload();
+
+		ChatInboxEntry bobRow = row("bob", "group1");
+		bobRow.setUnreadCount(3);
+		chatInboxRepo.save(bobRow);
+		reload();
+
+		ChatRoom changed = chatRoomRepo.findById("group1").orElseThrow();
+		changed.getParticipants().removeIf(user -> user.getUsername().equals("carol"));
+		chatInboxService.syncChat(changed);
+		reload();
+
+		assertThat(chatInboxRepo.findByChatId("group1"))
+				.extracting(ChatInboxEntry::getUsername)
+				.containsExactlyInAnyOrder("alice", "bob");
+		assertThat(row("bob", "group1").getUnreadCount()).isEqualTo(3);
+		assertThat(row("bob", "group1").getPeerUsername()).isNull();
+		assertThat(row("bob", "group1").getDisplayName()).isEqualTo("Group group1");
+	}
+
+	@Test
+	void inboxIsOrderedByLastActivity() {
+		chatInboxService.syncChat(individualChat("dm1", alice, bob, EARLIER));
+		chatInboxService.syncChat(individualChat("dm2", alice, carol, LATER));
+		reload();
+
+		assertThat(chatInboxService.getInbox("alice")).extracting(ChatRoomDTO::getChatId).containsExactly("dm2", "dm1");
+
+		chatInboxService.updateSummary("dm1", "newest", LATER.plusMinutes(5));
+		reload();
+
+		List<ChatRoomDTO> inbox = chatInboxService.getInbox("alice");
+		assertThat(inbox).extracting(ChatRoomDTO::getChatId).containsExactly("dm1", "dm2");
+		assertThat(inbox.get(0).getLastMessage()).isEqualTo("newest");
+		// The summary is shared by every member's row
+		assertThat(row("bob", "dm1").getLastMessage()).isEqualTo("newest");
+	}
+
+	@Test
+	void profileChangesReachPeersOnly() {
+		chatInboxService.syncChat(individualChat("dm1", alice, bob, EARLIER));
+		chatInboxService.syncChat(groupChat("group1", EARLIER, alice, bob));
+		reload();
+
+		bob.setPfpIndex("🐼");
+		bob.setPfpBg("#000000");
+		chatInboxService.updateUserProfile(bob);
+		reload();
+
+		assertThat(row("alice", "dm1").getPfpIndex()).isEqualTo("🐼");
+		assertThat(row("alice", "dm1").getPfpBg()).isEqualTo("#000000");
+		assertThat(row("alice", "group1").getPfpIndex()).isEqualTo("👥");
+	}
+
+	@Test
+	void backfillFillsAnEmptyInboxOnce() {
+		individualChat("dm1", alice, bob, EARLIER);
+		groupChat("group1", LATER, alice, bob, carol);
+		reload();
+
+		chatInboxService.backfill();
+		reload();
+
+		assertThat(chatInboxRepo.count()).isEqualTo(5);
+		assertThat(chatInboxService.getInbox("alice")).extracting(ChatRoomDTO::getChatId).containsExactly("group1", "dm1");
+
+		// Once rows exist, later starts leave the table alone
+		chatInboxRepo.delete(row("carol", "group1"));
+		reload();
+		chatInboxService.backfill();
+		reload();
+
+		assertThat(chatInboxRepo.count()).isEqualTo(4);
+	}
+
+	private ChatRoom individualChat(String chatId, User first, User second, LocalDateTime lastActivity) {
+		ChatRoom chat = new ChatRoom();
+		chat.setChatId(chatId);
+		chat.setIsGroup(false);
+		chat.setLastMessage("No messages yet");
+		chat.setLastActivity(lastActivity);
+		chat.getParticipants().add(first);
+		chat.getParticipants().add(second);
+		return chatRoomRepo.save(chat);
+	}
+
+	private ChatRoom groupChat(String chatId, LocalDateTime lastActivity, User admin, User... others) {
+		ChatRoom chat = new ChatRoom();
+		chat.setChatId(chatId);
+		chat.setIsGroup(true);
+		chat.setChatName("Group " + chatId);
+		chat.setAdmin(admin);
+		chat.setLastMessage("Group created");
+		chat.setLastActivity(lastActivity);
+		chat.getParticipants().add(admin);
+		chat.getParticipants().addAll(List.of(others));
+		return chatRoomRepo.save(chat);
+	}
+
+	private ChatInboxEntry row(String username, String chatId) {
+		return chatInboxRepo.findByChatId(chatId).stream()
+				.filter(entry -> entry.getUsername().equals(username))
+				.findFirst()
+				.orElseThrow();
+	}
+
+	// Bulk updates bypass the persistence context, so read everything back from the database
+	private void reload() {
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	private User user(String username, String pfpIndex, String pfpBg) {
+		return User.builder()
+				.username(username)
+				.email(username + "@example.com")
+				.password("secret")
+				.fullName(username)
+				.pfpIndex(pfpIndex)
+				.pfpBg(pfpBg)
+				.build();
+	}
+
+}
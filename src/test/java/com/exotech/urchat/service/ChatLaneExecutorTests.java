@@ -0,0 +1,99 @@
+package com.exotech.urchat.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatLaneExecutorTests {
+
+	private final ChatLaneExecutor lanes = new ChatLaneExecutor();
+
+	@BeforeEach
+	void start() {
+		ReflectionTestUtils.setField(lanes, "laneCount", 8);
+		ReflectionTestUtils.setField(lanes, "executorMode", "platform");
+		// Two queued commands per lane
+		ReflectionTestUtils.setField(lanes, "queueCapacity", 16);
+		lanes.start();
+	}
+
+	@AfterEach
+	void stop() throws InterruptedException {
+		lanes.stop();
+	}
+
+	@Test
+	void commandsForOneChatRunInSubmissionOrder() throws InterruptedException {
+		Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+		CountDownLatch done = new CountDownLatch(20 * 100);
+
+		// Room for every command, so this only checks ordering
+		lanes.stop();
+		ReflectionTestUtils.setField(lanes, "queueCapacity", 8 * 2000);
+		lanes.start();
+
+		for (int i = 0; i < 100; i++) {
+			for (int chat = 0; chat < 20; chat++) {
+				String chatId = "chat" + chat;
+				int sequence = i;
+				lanes.execute(chatId, () -> {
+					seen.computeIfAbsent(chatId, id -> Collections.synchronizedList(new ArrayList<>())).add(sequence);
+					done.countDown();
+				});
+			}
+		}
+
+		assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+		seen.values().forEach(sequence -> assertThat(sequence).isSorted().hasSize(100));
+	}
+
+	@Test
+	void aFailingCommandDoesNotStopItsLane() throws InterruptedException {
+		CountDownLatch ran = new CountDownLatch(1);
+
+		lanes.execute("chat1", () -> {
+			throw new RuntimeException("boom");
+		});
+		lanes.execute("chat1", ran::countDown);
+
+		assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void aFullLaneRejectsInsteadOfQueueingWithoutBound() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch ran = new CountDownLatch(3);
+
+		lanes.execute("chat1", () -> {
+			awaitQuietly(release);
+			ran.countDown();
+		});
+		lanes.execute("chat1", ran::countDown);
+		lanes.execute("chat1", ran::countDown);
+
+		assertThatThrownBy(() -> lanes.execute("chat1", ran::countDown)).isInstanceOf(RejectedExecutionException.class);
+		release.countDown();
+		assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	private void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
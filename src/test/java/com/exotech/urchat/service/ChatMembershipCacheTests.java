@@ -0,0 +1,71 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.model.ChatRoom;
+import com.exotech.urchat.repository.ChatRoomRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatMembershipCacheTests {
+
+	private final ChatRoomRepo chatRoomRepo = mock(ChatRoomRepo.class);
+	private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+	@BeforeEach
+	void stubChat() {
+		ChatRoom chat = new ChatRoom();
+		chat.setChatId("dm1");
+		chat.setIsGroup(false);
+		when(chatRoomRepo.findById("dm1")).thenReturn(Optional.of(chat));
+		when(chatRoomRepo.findParticipantUsernames("dm1")).thenReturn(List.of("alice", "bob"));
+	}
+
+	@Test
+	void invalidationIsPublishedForOtherNodes() {
+		ChatMembershipCache cache = new ChatMembershipCache(chatRoomRepo, eventPublisher, 100, 60_000);
+		assertThat(cache.isMember("dm1", "bob")).isTrue();
+
+		when(chatRoomRepo.findParticipantUsernames("dm1")).thenReturn(List.of("alice"));
+		cache.invalidate("dm1");
+
+		assertThat(cache.isMember("dm1", "bob")).isFalse();
+		verify(eventPublisher).publishEvent(new ChatMembershipInvalidatedEvent("dm1"));
+	}
+
+	@Test
+	void invalidationFromAnotherNodeEvictsWithoutRepublishing() {
+		ChatMembershipCache cache = new ChatMembershipCache(chatRoomRepo, eventPublisher, 100, 60_000);
+		ChatEventDelivery delivery = new ChatEventDelivery(mock(BroadcastSerializer.class), cache);
+		assertThat(cache.isMember("dm1", "bob")).isTrue();
+
+		// Bob left through another node
+		when(chatRoomRepo.findParticipantUsernames("dm1")).thenReturn(List.of("alice"));
+		assertThat(cache.isMember("dm1", "bob")).isTrue();
+		delivery.deliver(ChatEvent.builder().type(ChatEvent.Type.MEMBERSHIP_INVALIDATED).chatId("dm1").build());
+
+		assertThat(cache.isMember("dm1", "bob")).isFalse();
+		verify(eventPublisher, never()).publishEvent(any(Object.class));
+	}
+
+	@Test
+	void entriesAreReloadedOnceTheTtlPasses() {
+		// A negative ttl expires every entry as soon as it is cached
+		ChatMembershipCache cache = new ChatMembershipCache(chatRoomRepo, eventPublisher, 100, -1);
+		assertThat(cache.isMember("dm1", "bob")).isTrue();
+
+		when(chatRoomRepo.findParticipantUsernames("dm1")).thenReturn(List.of("alice"));
+
+		assertThat(cache.isMember("dm1", "bob")).isFalse();
+	}
+
+}
@@ -0,0 +1,146 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.dto.messageDTOs.MessageDTO;
+import com.exotech.urchat.model.ChatRoom;
+import com.exotech.urchat.model.Message;
+import com.exotech.urchat.model.User;
+import com.exotech.urchat.repository.ChatRoomRepo;
+import com.exotech.urchat.repository.MessageRepo;
+import com.exotech.urchat.repository.UserRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.auto_quote_keyword=true",
+		"spring.jpa.show-sql=false"
+})
+class ChatServicePaginationTests extends ChatServiceTestBase {
+
+	private static final LocalDateTime HOUR_AGO = LocalDateTime.now().minusHours(1).truncatedTo(ChronoUnit.MINUTES);
+
+	@Autowired
+	private ChatService chatService;
+	@Autowired
+	private MessageRepo messageRepo;
+	@Autowired
+	private ChatRoomRepo chatRoomRepo;
+	@Autowired
+	private UserRepo userRepo;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private User alice;
+	private ChatRoom chat;
+	// Ids of the messages inside the 7 day window, in (timestamp, id) order
+	private List<Long> expected;
+	private Long tooOld;
+
+	@BeforeEach
+	void createChat() {
+		alice = userRepo.save(user("alice"));
+		User bob = userRepo.save(user("bob"));
+		chat = new ChatRoom();
+		chat.setChatId("dm1");
+		chat.setIsGroup(false);
+		chat.getParticipants().add(alice);
+		chat.getParticipants().add(bob);
+		chat = chatRoomRepo.save(chat);
+
+		// Saved out of time order, with three messages sharing one timestamp and two another,
+		// so only the id tiebreak keeps pages from skipping or repeating rows
+		List<Message> messages = new ArrayList<>();
+		for (int minute : new int[]{3, 1, 1, 0, 2, 1, 2}) {
+			messages.add(send(HOUR_AGO.plusMinutes(minute)));
+		}
+		expected = messages.stream()
+				.sorted(Comparator.comparing(Message::getTimestamp).thenComparing(Message::getMessageId))
+				.map(Message::getMessageId)
+				.toList();
+		tooOld = send(LocalDateTime.now().minusDays(8)).getMessageId();
+		entityManager.clear();
+	}
+
+	@Test
+	void firstPageIsTheNewestOldestFirst() {
+		List<MessageDTO> page = chatService.getPaginatedMessages("dm1", null, null, 3, "alice");
+
+		assertThat(ids(page)).containsExactlyElementsOf(expected.subList(expected.size() - 3, expected.size()));
+	}
+
+	@Test
+	void pagingBackwardsReturnsEveryMessageOnce() {
+		List<Long> seen = new ArrayList<>();
+		List<MessageDTO> page = chatService.getPaginatedMessages("dm1", null, null, 2, "alice");
+		while (!page.isEmpty()) {
+			seen.addAll(0, ids(page));
+			page = chatService.getPaginatedMessages("dm1", page.get(0).getId(), null, 2, "alice");
+		}
+
+		assertThat(seen).containsExactlyElementsOf(expected);
+	}
+
+	@Test
+	void pagingForwardsReturnsEveryMessageOnce() {
+		List<Long> seen = new ArrayList<>(List.of(expected.get(0)));
+		List<MessageDTO> page = chatService.getPaginatedMessages("dm1", null, expected.get(0), 2, "alice");
+		while (!page.isEmpty()) {
+			seen.addAll(ids(page));
+			page = chatService.getPaginatedMessages("dm1", null, page.get(page.size() - 1).getId(), 2, "alice");
+		}
+
+		assertThat(seen).containsExactlyElementsOf(expected);
+	}
+
+	@Test
+	void pagesEndAtTheOldestAndNewestMessage() {
+		assertThat(chatService.getPaginatedMessages("dm1", expected.get(0), null, 2, "alice")).isEmpty();
+		assertThat(chatService.getPaginatedMessages("dm1", null, expected.get(expected.size() - 1), 2, "alice")).isEmpty();
+
+		// A short last page holds what is left
+		Long second = expected.get(1);
+		assertThat(ids(chatService.getPaginatedMessages("dm1", second, null, 5, "alice"))).containsExactly(expected.get(0));
+	}
+
+	@Test
+	void messagesOutsideTheWindowAreNeverReturned() {
+		assertThat(ids(chatService.getPaginatedMessages("dm1", null, null, 100, "alice")))
+				.containsExactlyElementsOf(expected)
+				.doesNotContain(tooOld);
+
+		// Paging forward from the old message still starts at the window
+		assertThat(ids(chatService.getPaginatedMessages("dm1", null, tooOld, 2, "alice")))
+				.containsExactlyElementsOf(expected.subList(0, 2));
+	}
+
+	private Message send(LocalDateTime timestamp) {
+		Message message = new Message();
+		message.setMessageContent("at " + timestamp);
+		message.setSender(alice);
+		message.setChatRoom(chat);
+		message = messageRepo.saveAndFlush(message);
+		// The creation timestamp is always "now" on insert
+		jdbcTemplate.update("UPDATE messages SET timestamp = ? WHERE message_id = ?", timestamp, message.getMessageId());
+		message.setTimestamp(timestamp);
+		return message;
+	}
+
+	private List<Long> ids(List<MessageDTO> page) {
+		return page.stream().map(MessageDTO::getId).toList();
+	}
+
+}
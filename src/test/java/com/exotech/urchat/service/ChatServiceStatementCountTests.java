@@ -0,0 +1,102 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.model.ChatRoom;
+import com.exotech.urchat.model.Message;
+import com.exotech.urchat.model.User;
+import com.exotech.urchat.repository.ChatRoomRepo;
+import com.exotech.urchat.repository.UserRepo;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"spring.jpa.properties.hibernate.auto_quote_keyword=true",
+		"spring.jpa.show-sql=false"
+})
+class ChatServiceStatementCountTests extends ChatServiceTestBase {
+
+	@Autowired
+	private ChatService chatService;
+	@Autowired
+	private ChatMembershipCache membershipCache;
+	@Autowired
+	private UserRepo userRepo;
+	@Autowired
+	private ChatRoomRepo chatRoomRepo;
+	@Autowired
+	private TestEntityManager entityManager;
+
+	// Statements one send may prepare besides its reads: the insert, and a sequence call
+	// when the pooled id block runs out
+	private static final int WRITE_STATEMENTS = 2;
+
+	@Test
+	void sendMessageRunsAtMostOneReadQuery() {
+		createGroup("group1");
+
+		// Any chat someone is actively sending to is already cached
+		membershipCache.get("group1");
+
+		Statistics statistics = clearedStatistics();
+		Message message = chatService.sendMessage("alice", "group1", "hello", null);
+		entityManager.flush();
+
+		assertThat(message.getMessageId()).isNotNull();
+		// Only the sender lookup reads
+		assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(1 + WRITE_STATEMENTS);
+		assertThat(statistics.getEntityFetchCount()).isZero();
+		assertThat(statistics.getCollectionLoadCount()).isZero();
+		assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+		assertThat(statistics.getEntityUpdateCount()).isZero();
+	}
+
+	@Test
+	void sendMessageToAnUncachedChatLoadsMembersOnce() {
+		createGroup("group2");
+		// Nothing has read this chat yet
+		membershipCache.invalidate("group2");
+
+		Statistics statistics = clearedStatistics();
+		chatService.sendMessage("alice", "group2", "hello", null);
+		chatService.sendMessage("bob", "group2", "hi", null);
+		entityManager.flush();
+
+		// The chat row and its member usernames once, then the sender lookup for each send
+		assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2 + 2 + 2 * WRITE_STATEMENTS);
+		assertThat(statistics.getCollectionLoadCount()).isZero();
+		assertThat(statistics.getEntityInsertCount()).isEqualTo(2);
+		assertThat(statistics.getEntityUpdateCount()).isZero();
+	}
+
+	private void createGroup(String chatId) {
+		User alice = userRepo.save(user("alice"));
+		User bob = userRepo.save(user("bob"));
+
+		ChatRoom group = new ChatRoom();
+		group.setChatId(chatId);
+		group.setIsGroup(true);
+		group.setChatName("Group");
+		group.setAdmin(alice);
+		group.getParticipants().add(alice);
+		group.getParticipants().add(bob);
+		chatRoomRepo.save(group);
+
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	private Statistics clearedStatistics() {
+		Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+				.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		return statistics;
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.dto.messageDTOs.MessageDTO;
+import com.exotech.urchat.model.ChatRoom;
+import com.exotech.urchat.model.Message;
+import com.exotech.urchat.model.User;
+import com.exotech.urchat.repository.ChatRoomRepo;
+import com.exotech.urchat.repository.MessageRepo;
+import com.exotech.urchat.repository.UserRepo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.auto_quote_keyword=true",
+		"spring.jpa.show-sql=false"
+})
+class ChatServiceStreamingTests extends ChatServiceTestBase {
+
+	// More than two of the stream's 200 row fetches
+	private static final int MESSAGES = 450;
+	private static final LocalDateTime HOUR_AGO = LocalDateTime.now().minusHours(1).truncatedTo(ChronoUnit.MINUTES);
+
+	private final ObjectMapper json = new ObjectMapper().findAndRegisterModules()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+	@Autowired
+	private ChatService chatService;
+	@Autowired
+	private MessageRepo messageRepo;
+	@Autowired
+	private ChatRoomRepo chatRoomRepo;
+	@Autowired
+	private UserRepo userRepo;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private List<Long> expected;
+	private Long tooOld;
+
+	@BeforeEach
+	void createChat() {
+		// The shared fixture mocks the mapper; streaming needs the real writer
+		when(objectMapper.writerFor(MessageDTO.class)).thenReturn(json.writerFor(MessageDTO.class));
+		when(objectMapper.getFactory()).thenReturn(json.getFactory());
+
+		User alice = userRepo.save(user("alice"));
+		User bob = userRepo.save(user("bob"));
+		userRepo.save(user("carol"));
+		ChatRoom chat = new ChatRoom();
+		chat.setChatId("dm1");
+		chat.setIsGroup(false);
+		chat.getParticipants().add(alice);
+		chat.getParticipants().add(bob);
+		chat = chatRoomRepo.save(chat);
+
+		List<Message> messages = new ArrayList<>();
+		for (int i = 0; i <= MESSAGES; i++) {
+			Message message = new Message();
+			message.setMessageContent("message " + i);
+			message.setSender(i % 2 == 0 ? alice : bob);
+			message.setChatRoom(chat);
+			messages.add(message);
+		}
+		messageRepo.saveAllAndFlush(messages);
+
+		// Newest first by id, three to a timestamp, and one message outside the 7 day window
+		List<Object[]> timestamps = new ArrayList<>();
+		for (int i = 0; i < MESSAGES; i++) {
+			Message message = messages.get(i);
+			message.setTimestamp(HOUR_AGO.plusSeconds((MESSAGES - i) / 3));
+			timestamps.add(new Object[]{message.getTimestamp(), message.getMessageId()});
+		}
+		Message old = messages.get(MESSAGES);
+		timestamps.add(new Object[]{LocalDateTime.now().minusDays(8), old.getMessageId()});
+		jdbcTemplate.batchUpdate("UPDATE messages SET timestamp = ? WHERE message_id = ?", timestamps);
+		entityManager.clear();
+
+		expected = messages.subList(0, MESSAGES).stream()
+				.sorted(Comparator.comparing(Message::getTimestamp).thenComparing(Message::getMessageId))
+				.map(Message::getMessageId)
+				.toList();
+		tooOld = old.getMessageId();
+	}
+
+	@Test
+	void nonMemberIsRejectedBeforeAnythingIsWritten() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertThatThrownBy(() -> chatService.streamChatMessages("dm1", "carol").writeTo(out))
+				.hasMessage("Access denied to this chat");
+		assertThat(out.size()).isZero();
+	}
+
+	@Test
+	void streamIsOneOrderedArrayAcrossFetches() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		chatService.streamChatMessages("dm1", "alice").writeTo(out);
+
+		JsonNode array = json.readTree(out.toByteArray());
+		assertThat(array.isArray()).isTrue();
+		List<Long> ids = new ArrayList<>();
+		array.forEach(message -> ids.add(message.get("id").asLong()));
+		assertThat(ids).containsExactlyElementsOf(expected).doesNotContain(tooOld);
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.dto.chatDTOs.ChatDTOConvertor;
+import com.exotech.urchat.dto.messageDTOs.MessageDTOConvertor;
+import com.exotech.urchat.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+// ChatService against a real JPA slice, with everything that leaves the database mocked
+@Import({ChatService.class, ChatMembershipCache.class, ContactCache.class, MessageDTOConvertor.class, ChatDTOConvertor.class})
+abstract class ChatServiceTestBase {
+
+	@MockitoBean
+	protected ChatEventBus eventBus;
+	@MockitoBean
+	protected ChatInboxService chatInboxService;
+	@MockitoBean
+	protected ReadCursorService readCursorService;
+	@MockitoBean
+	protected ChatActivityAggregator activityAggregator;
+	@MockitoBean
+	protected ObjectMapper objectMapper;
+
+	protected static User user(String username) {
+		return User.builder()
+				.username(username)
+				.email(username + "@example.com")
+				.password("secret")
+				.fullName(username)
+				.build();
+	}
+
+}
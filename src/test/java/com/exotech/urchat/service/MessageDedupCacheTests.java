@@ -0,0 +1,41 @@
+package com.exotech.urchat.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageDedupCacheTests {
+
+	@Test
+	void retriesAreKeyedBySenderAndClientId() {
+		MessageDedupCache cache = new MessageDedupCache(10, 60_000);
+		cache.put("alice", "c1", 7L);
+
+		assertThat(cache.get("alice", "c1")).isEqualTo(7L);
+		// Client ids are only unique per sender
+		assertThat(cache.get("bob", "c1")).isNull();
+		assertThat(cache.get("alice", "c2")).isNull();
+	}
+
+	@Test
+	void oldestEntriesFallOutPastTheSizeLimit() {
+		MessageDedupCache cache = new MessageDedupCache(2, 60_000);
+		cache.put("alice", "c1", 1L);
+		cache.put("alice", "c2", 2L);
+		cache.put("alice", "c3", 3L);
+
+		assertThat(cache.get("alice", "c1")).isNull();
+		assertThat(cache.get("alice", "c2")).isEqualTo(2L);
+		assertThat(cache.get("alice", "c3")).isEqualTo(3L);
+	}
+
+	@Test
+	void expiredEntriesAreMisses() {
+		// A negative ttl makes every entry expired the moment it is stored
+		MessageDedupCache cache = new MessageDedupCache(10, -1);
+		cache.put("alice", "c1", 1L);
+
+		assertThat(cache.get("alice", "c1")).isNull();
+	}
+
+}
@@ -0,0 +1,202 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.model.ChatRoom;
+import com.exotech.urchat.model.Message;
+import com.exotech.urchat.model.User;
+import com.exotech.urchat.repository.ChatRoomRepo;
+import com.exotech.urchat.repository.MessageRepo;
+import com.exotech.urchat.repository.UserRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// No test transaction: each send commits on its own, so the unique key on
+// (sender, client_message_id) trips the way it does for two racing copies
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.auto_quote_keyword=true",
+		"spring.jpa.show-sql=false"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({MessageIngestService.class, MessageDedupCache.class})
+class MessageIngestServiceTests extends ChatServiceTestBase {
+
+	@Autowired
+	private MessageIngestService messageIngestService;
+	@Autowired
+	private ChatService chatService;
+	@Autowired
+	private MessageRepo messageRepo;
+	@Autowired
+	private ChatRoomRepo chatRoomRepo;
+	@Autowired
+	private UserRepo userRepo;
+	@Autowired
+	private ChatMembershipCache membershipCache;
+	@Autowired
+	private MessageDedupCache dedupCache;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final List<MessageIngestService> groupCommitters = new ArrayList<>();
+	private final ExecutorService senders = Executors.newFixedThreadPool(3);
+
+	@BeforeEach
+	void createChat() {
+		User alice = userRepo.save(user("alice"));
+		User bob = userRepo.save(user("bob"));
+		ChatRoom dm = new ChatRoom();
+		dm.setChatId("dm1");
+		dm.setIsGroup(false);
+		dm.getParticipants().add(alice);
+		dm.getParticipants().add(bob);
+		chatRoomRepo.save(dm);
+	}
+
+	@AfterEach
+	void clearTables() {
+		senders.shutdownNow();
+		groupCommitters.forEach(MessageIngestService::stop);
+		messageRepo.deleteAll();
+		chatRoomRepo.deleteAll();
+		userRepo.deleteAll();
+	}
+
+	@Test
+	void retriedSendIsFoundInTheCache() {
+		Message saved = messageIngestService.send("alice", "dm1", "hi", "c1");
+
+		assertThat(messageIngestService.findDuplicate("alice", "c1")).isEqualTo(saved.getMessageId());
+		assertThat(messageIngestService.findDuplicate("bob", "c1")).isNull();
+		// Sends without a client id are never deduplicated
+		assertThat(messageIngestService.findDuplicate("alice", null)).isNull();
+	}
+
+	@Test
+	void copyThatMissedTheCacheTripsTheUniqueKeyAndResolvesToTheStoredMessage() {
+		// The first copy is stored but hasn't reached the cache yet
+		Message first = chatService.sendMessage("alice", "dm1", "hi", "c2");
+		assertThat(messageIngestService.findDuplicate("alice", "c2")).isNull();
+
+		assertThatThrownBy(() -> messageIngestService.send("alice", "dm1", "hi", "c2"))
+				.isInstanceOf(DataIntegrityViolationException.class);
+
+		assertThat(messageIngestService.resolveDuplicate("alice", "c2")).isEqualTo(first.getMessageId());
+		// Resolved once, later retries are answered from memory
+		assertThat(messageIngestService.findDuplicate("alice", "c2")).isEqualTo(first.getMessageId());
+		assertThat(messageRepo.count()).isEqualTo(1);
+	}
+
+	@Test
+	void unknownClientIdDoesNotResolve() {
+		assertThat(messageIngestService.resolveDuplicate("alice", "never-sent")).isNull();
+		assertThat(messageIngestService.resolveDuplicate("alice", null)).isNull();
+	}
+
+	@Test
+	void overlongClientIdIsRejectedBeforeSaving() {
+		assertThatThrownBy(() -> messageIngestService.send("alice", "dm1", "hi", "x".repeat(65)))
+				.hasMessage("Client message id is too long");
+		assertThat(messageRepo.count()).isZero();
+	}
+
+	@Test
+	void concurrentSendsShareOneTransactionAndEachGetsItsOwnMessage() throws Exception {
+		CountingTransactionTemplate transactions = new CountingTransactionTemplate(transactionManager);
+		MessageIngestService ingest = groupCommitting(transactions);
+
+		List<Future<Message>> sends = sendConcurrently(ingest, "one", "two", "three");
+		List<Message> saved = new ArrayList<>();
+		for (Future<Message> send : sends) {
+			saved.add(send.get(10, TimeUnit.SECONDS));
+		}
+
+		assertThat(transactions.count()).isEqualTo(1);
+		assertThat(saved).extracting(Message::getMessageContent).containsExactly("one", "two", "three");
+		assertThat(saved).extracting(Message::getMessageId).doesNotContainNull().doesNotHaveDuplicates();
+		for (Message message : saved) {
+			assertThat(messageRepo.findById(message.getMessageId()).orElseThrow().getMessageContent())
+					.isEqualTo(message.getMessageContent());
+			assertThat(ingest.findDuplicate("alice", "c-" + message.getMessageContent())).isEqualTo(message.getMessageId());
+		}
+	}
+
+	@Test
+	void failingSendFallsBackToOwnCommitsWithoutFailingTheOthers() throws Exception {
+		CountingTransactionTemplate transactions = new CountingTransactionTemplate(transactionManager);
+		MessageIngestService ingest = groupCommitting(transactions);
+
+		// Too long for the column, so the shared insert batch fails at commit
+		List<Future<Message>> sends = sendConcurrently(ingest, "fine", "x".repeat(1001), "also fine");
+
+		assertThat(sends.get(0).get(10, TimeUnit.SECONDS).getMessageContent()).isEqualTo("fine");
+		assertThat(sends.get(2).get(10, TimeUnit.SECONDS).getMessageContent()).isEqualTo("also fine");
+		assertThatThrownBy(() -> sends.get(1).get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+		// Only the batch used the template; the retries commit through ChatService's own transactions
+		assertThat(transactions.count()).isEqualTo(1);
+		assertThat(messageRepo.count()).isEqualTo(2);
+	}
+
+	// A batch closes once all three sends have arrived, the window is only a safety net
+	private MessageIngestService groupCommitting(TransactionTemplate transactionTemplate) {
+		MessageIngestService ingest = new MessageIngestService(chatService, membershipCache, dedupCache, messageRepo,
+				transactionTemplate);
+		ReflectionTestUtils.setField(ingest, "groupCommitEnabled", true);
+		ReflectionTestUtils.setField(ingest, "windowMs", 5000L);
+		ReflectionTestUtils.setField(ingest, "maxBatch", 3);
+		ReflectionTestUtils.setField(ingest, "timeoutMs", 10000L);
+		ingest.start();
+		groupCommitters.add(ingest);
+		return ingest;
+	}
+
+	private List<Future<Message>> sendConcurrently(MessageIngestService ingest, String... contents) {
+		List<Future<Message>> sends = new ArrayList<>();
+		for (String content : contents) {
+			sends.add(senders.submit(() -> ingest.send("alice", "dm1", content, "c-" + content.substring(0, Math.min(content.length(), 10)))));
+		}
+		return sends;
+	}
+
+	private static class CountingTransactionTemplate extends TransactionTemplate {
+
+		private final AtomicInteger transactions = new AtomicInteger();
+
+		CountingTransactionTemplate(PlatformTransactionManager transactionManager) {
+			super(transactionManager);
+		}
+
+		@Override
+		public <T> T execute(TransactionCallback<T> action) {
+			transactions.incrementAndGet();
+			return super.execute(action);
+		}
+
+		int count() {
+			return transactions.get();
+		}
+	}
+
+}
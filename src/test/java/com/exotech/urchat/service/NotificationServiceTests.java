@@ -0,0 +1,150 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.model.User;
+import com.exotech.urchat.repository.UserRepo;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.MulticastMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.MAP;
+import static org.mockito.Mockito.*;
+
+class NotificationServiceTests {
+
+	private final UserRepo userRepo = mock(UserRepo.class);
+	private final StubPushGateway pushGateway = new StubPushGateway();
+	private final ChatPresenceRegistry presenceRegistry = new ChatPresenceRegistry();
+	private final NotificationService notificationService =
+			new NotificationService(pushGateway, userRepo, presenceRegistry);
+
+	@Test
+	void groupNotificationIsSplitIntoMulticastBatches() {
+		List<User> recipients = new ArrayList<>();
+		for (int i = 0; i < 1200; i++) {
+			recipients.add(User.builder().username("user" + i).fcmToken("token" + i).build());
+		}
+		when(userRepo.findByChatRoomsChatIdAndUsernameNot("chat1", "sender")).thenReturn(recipients);
+
+		notificationService.deliver(groupEvent());
+
+		assertThat(pushGateway.getSentBatches()).extracting(List::size).containsExactly(500, 500, 200);
+	}
+
+	@Test
+	void invalidTokensAreClearedPerBatch() {
+		User valid = User.builder().username("valid").fcmToken("good").build();
+		User stale = User.builder().username("stale").fcmToken("bad").build();
+		when(userRepo.findByChatRoomsChatIdAndUsernameNot("chat1", "sender")).thenReturn(List.of(valid, stale));
+		pushGateway.failToken("bad", MessagingErrorCode.UNREGISTERED);
+
+		notificationService.deliver(groupEvent());
+
+		assertThat(stale.getFcmToken()).isNull();
+		assertThat(valid.getFcmToken()).isEqualTo("good");
+		verify(userRepo).save(stale);
+		verify(userRepo, never()).save(valid);
+	}
+
+	@Test
+	void recipientsWithoutTokensAreSkipped() {
+		User noToken = User.builder().username("noToken").build();
+		when(userRepo.findByChatRoomsChatIdAndUsernameNot("chat1", "sender")).thenReturn(List.of(noToken));
+
+		notificationService.deliver(groupEvent());
+
+		assertThat(pushGateway.getSentBatches()).isEmpty();
+	}
+
+	@Test
+	void usersViewingTheChatAreNotPushed() {
+		User viewing = User.builder().username("viewing").fcmToken("viewingToken").build();
+		User away = User.builder().username("away").fcmToken("awayToken").build();
+		when(userRepo.findByChatRoomsChatIdAndUsernameNot("chat1", "sender")).thenReturn(List.of(viewing, away));
+		presenceRegistry.sessionConnected("viewing", "session1");
+		presenceRegistry.subscribed("viewing", "session1", "sub-0", "/topic/chat/chat1");
+		presenceRegistry.subscribed("away", "session2", "sub-0", "/topic/chat/chat1/summary");
+
+		notificationService.deliver(groupEvent());
+
+		assertThat(pushGateway.getSentBatches()).containsExactly(List.of("awayToken"));
+	}
+
+	@Test
+	void resolvedRecipientsSkipTheChatLookup() {
+		User reader = User.builder().username("reader").fcmToken("readerToken").build();
+		when(userRepo.findAllByUsernames(List.of("reader"))).thenReturn(List.of(reader));
+		presenceRegistry.sessionConnected("viewing", "session1");
+		presenceRegistry.subscribed("viewing", "session1", "sub-0", "/topic/chat/chat1");
+
+		notificationService.deliver(new MessageNotificationEvent("chat1", "sender", "hello", "Group", true, "👥", "#4CAF50",
+				List.of("reader", "viewing")));
+
+		assertThat(pushGateway.getSentBatches()).containsExactly(List.of("readerToken"));
+		verify(userRepo, never()).findByChatRoomsChatIdAndUsernameNot(any(), any());
+	}
+
+	@Test
+	void burstInsideTheWindowIsPushedOnceAndThenSummarized() {
+		User reader = User.builder().username("reader").fcmToken("readerToken").build();
+		when(userRepo.findAllByUsernames(List.of("reader"))).thenReturn(List.of(reader));
+		startCoalescing();
+
+		for (int i = 1; i <= 3; i++) {
+			notificationService.deliver(directEvent("message " + i));
+		}
+
+		// The first message doesn't wait for the window
+		assertThat(pushGateway.getSentMulticasts()).hasSize(1);
+		assertThat(pushGateway.getSentMulticasts().get(0)).extracting("notification.body").isEqualTo("message 1");
+
+		// Closes the window
+		notificationService.stopWorkers();
+
+		assertThat(pushGateway.getSentMulticasts()).hasSize(2);
+		MulticastMessage summary = pushGateway.getSentMulticasts().get(1);
+		assertThat(summary).extracting("notification.body").isEqualTo("3 new messages from sender");
+		assertThat(summary).extracting("data").asInstanceOf(MAP).containsEntry("messageCount", "3");
+		for (MulticastMessage push : pushGateway.getSentMulticasts()) {
+			assertThat(push).extracting("androidConfig.collapseKey", "androidConfig.notification.tag")
+					.containsOnly("chat_chat1");
+		}
+	}
+
+	@Test
+	void singleMessageIsPushedWithoutWaitingForTheWindow() {
+		User reader = User.builder().username("reader").fcmToken("readerToken").build();
+		when(userRepo.findAllByUsernames(List.of("reader"))).thenReturn(List.of(reader));
+		startCoalescing();
+
+		notificationService.deliver(directEvent("hello"));
+
+		assertThat(pushGateway.getSentBatches()).containsExactly(List.of("readerToken"));
+
+		notificationService.stopWorkers();
+
+		// Nothing arrived after it, so there is no summary to send
+		assertThat(pushGateway.getSentBatches()).hasSize(1);
+	}
+
+	// A window long enough that only stopWorkers closes it
+	private void startCoalescing() {
+		ReflectionTestUtils.setField(notificationService, "coalesceWindowMs", 60_000L);
+		ReflectionTestUtils.setField(notificationService, "queueCapacity", 10);
+		ReflectionTestUtils.setField(notificationService, "workerCount", 1);
+		notificationService.startWorkers();
+	}
+
+	private MessageNotificationEvent directEvent(String content) {
+		return new MessageNotificationEvent("chat1", "sender", content, "sender", false, "💬", "#2196F3", List.of("reader"));
+	}
+
+	private MessageNotificationEvent groupEvent() {
+		return new MessageNotificationEvent("chat1", "sender", "hello", "Group", true, "👥", "#4CAF50", null);
+	}
+
+}
@@ -0,0 +1,266 @@
+package com.exotech.urchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Two nodes sharing an in-memory stand-in for Postgres LISTEN/NOTIFY. Everything but the
+// NOTIFY itself runs against H2 with real transactions, and a NOTIFY is only sent when the
+// transaction it ran in commits, as in Postgres.
+class PostgresChatEventBusTests {
+
+	private final FakePostgres postgres = new FakePostgres();
+	private final List<PostgresChatEventBus> buses = new ArrayList<>();
+
+	@AfterEach
+	void stop() {
+		buses.forEach(PostgresChatEventBus::stop);
+	}
+
+	@Test
+	void eventsReachOtherNodesAndAreNotDeliveredTwiceLocally() throws Exception {
+		ChatEventDelivery deliveryA = mock(ChatEventDelivery.class);
+		ChatEventDelivery deliveryB = mock(ChatEventDelivery.class);
+		PostgresChatEventBus nodeA = listeningNode(deliveryA);
+		PostgresChatEventBus nodeB = listeningNode(deliveryB);
+
+		ChatEvent fromA = event("dm1", "hello");
+		nodeA.publish(fromA);
+		verify(deliveryB, timeout(5000)).deliver(fromA);
+
+		// A receives B's event after its own, so by then its own NOTIFY has been read and skipped
+		ChatEvent fromB = event("dm1", "hi back");
+		nodeB.publish(fromB);
+		verify(deliveryA, timeout(5000)).deliver(fromB);
+		verify(deliveryA, times(1)).deliver(fromA);
+		verify(deliveryB, times(1)).deliver(fromB);
+	}
+
+	@Test
+	void membershipInvalidationsTravelLikeAnyOtherEvent() throws Exception {
+		ChatEventDelivery deliveryB = mock(ChatEventDelivery.class);
+		PostgresChatEventBus nodeA = node(mock(ChatEventDelivery.class));
+		listeningNode(deliveryB);
+
+		ChatEvent invalidation = ChatEvent.builder().type(ChatEvent.Type.MEMBERSHIP_INVALIDATED).chatId("group1").build();
+		nodeA.publish(invalidation);
+
+		verify(deliveryB, timeout(5000)).deliver(invalidation);
+	}
+
+	@Test
+	void listenerReconnectsAfterLosingItsConnection() throws Exception {
+		ChatEventDelivery deliveryB = mock(ChatEventDelivery.class);
+		PostgresChatEventBus nodeA = node(mock(ChatEventDelivery.class));
+		listeningNode(deliveryB);
+
+		postgres.dropNextPoll();
+		postgres.awaitListening();
+		assertThat(postgres.connections()).isEqualTo(2);
+
+		ChatEvent afterReconnect = event("dm1", "still there?");
+		nodeA.publish(afterReconnect);
+		verify(deliveryB, timeout(5000)).deliver(afterReconnect);
+	}
+
+	@Test
+	void publishingAfterTheCallersCommitStillNotifies() throws Exception {
+		ChatEventDelivery deliveryB = mock(ChatEventDelivery.class);
+		PostgresChatEventBus nodeA = node(mock(ChatEventDelivery.class));
+		listeningNode(deliveryB);
+
+		// Where @TransactionalEventListener(AFTER_COMMIT) runs MembershipInvalidationPublisher:
+		// the membership change has committed but its connection is still bound
+		ChatEvent invalidation = ChatEvent.builder().type(ChatEvent.Type.MEMBERSHIP_INVALIDATED).chatId("group1").build();
+		new TransactionTemplate(postgres.transactionManager()).executeWithoutResult(status ->
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void afterCommit() {
+						nodeA.publish(invalidation);
+					}
+				}));
+
+		verify(deliveryB, timeout(5000)).deliver(invalidation);
+	}
+
+	@Test
+	void eventsTooLargeForNotifyAreSentByReference() throws Exception {
+		ChatEventDelivery deliveryB = mock(ChatEventDelivery.class);
+		PostgresChatEventBus nodeA = node(mock(ChatEventDelivery.class));
+		listeningNode(deliveryB);
+
+		ChatEvent large = event("group1", "x".repeat(10_000));
+		nodeA.publish(large);
+
+		verify(deliveryB, timeout(5000)).deliver(large);
+		assertThat(postgres.notifications()).allSatisfy(json -> assertThat(json.length()).isLessThan(1000));
+		assertThat(postgres.storedPayloads()).isEqualTo(1);
+	}
+
+	private PostgresChatEventBus listeningNode(ChatEventDelivery delivery) throws InterruptedException {
+		PostgresChatEventBus bus = node(delivery);
+		bus.start();
+		postgres.awaitListening();
+		return bus;
+	}
+
+	private PostgresChatEventBus node(ChatEventDelivery delivery) {
+		PostgresChatEventBus bus = new PostgresChatEventBus(delivery, postgres.notifier(), postgres.dataSource(),
+				new ObjectMapper(), postgres.transactionManager());
+		ReflectionTestUtils.setField(bus, "pollMs", 50);
+		ReflectionTestUtils.setField(bus, "reconnectMs", 10L);
+		buses.add(bus);
+		return bus;
+	}
+
+	private ChatEvent event(String chatId, String payload) {
+		return ChatEvent.builder().type(ChatEvent.Type.MESSAGE_CREATED).chatId(chatId).payload(payload).build();
+	}
+
+	// pg_notify goes to every connection that has run LISTEN; a dropped connection stops receiving
+	private static class FakePostgres {
+
+		private final DriverManagerDataSource database = new DriverManagerDataSource(
+				"jdbc:h2:mem:chat-events-" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+		private final PlatformTransactionManager transactionManager = new DataSourceTransactionManager(database);
+		private final List<String> notifications = new CopyOnWriteArrayList<>();
+		private final List<BlockingQueue<String>> listeners = new CopyOnWriteArrayList<>();
+		private final Semaphore listening = new Semaphore(0);
+		private final AtomicBoolean dropNextPoll = new AtomicBoolean();
+		private int connections;
+
+		FakePostgres() {
+			new JdbcTemplate(database).execute("CREATE TABLE chat_event_payloads (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+					+ "payload VARCHAR NOT NULL, created_at TIMESTAMP NOT NULL)");
+		}
+
+		JdbcTemplate notifier() {
+			return new JdbcTemplate(database) {
+				@Override
+				public <T> T query(String sql, ResultSetExtractor<T> rse, Object... args) {
+					if (!sql.equals("SELECT pg_notify(?, ?)")) {
+						return super.query(sql, rse, args);
+					}
+					assertThat(args[0]).isEqualTo("chat_events");
+					String json = (String) args[1];
+					if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+						send(json);
+						return null;
+					}
+					// Sent when the transaction commits; one registered from inside another afterCommit never is
+					TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+						@Override
+						public void afterCommit() {
+							send(json);
+						}
+					});
+					return null;
+				}
+			};
+		}
+
+		PlatformTransactionManager transactionManager() {
+			return transactionManager;
+		}
+
+		List<String> notifications() {
+			return notifications;
+		}
+
+		Integer storedPayloads() {
+			return new JdbcTemplate(database).queryForObject("SELECT COUNT(*) FROM chat_event_payloads", Integer.class);
+		}
+
+		private void send(String json) {
+			notifications.add(json);
+			listeners.forEach(queue -> queue.add(json));
+		}
+
+		DataSource dataSource() {
+			DataSource dataSource = mock(DataSource.class);
+			try {
+				when(dataSource.getConnection()).thenAnswer(invocation -> connect());
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+			return dataSource;
+		}
+
+		void dropNextPoll() {
+			dropNextPoll.set(true);
+		}
+
+		void awaitListening() throws InterruptedException {
+			assertThat(listening.tryAcquire(5, TimeUnit.SECONDS)).as("listener connected").isTrue();
+		}
+
+		synchronized int connections() {
+			return connections;
+		}
+
+		private Connection connect() throws SQLException {
+			synchronized (this) {
+				connections++;
+			}
+			BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+			Connection connection = mock(Connection.class);
+			Statement statement = mock(Statement.class);
+			PGConnection pgConnection = mock(PGConnection.class);
+
+			when(connection.createStatement()).thenReturn(statement);
+			when(statement.execute("LISTEN chat_events")).thenAnswer(invocation -> {
+				listeners.add(queue);
+				listening.release();
+				return false;
+			});
+			when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+			when(pgConnection.getNotifications(anyInt())).thenAnswer(invocation -> {
+				if (dropNextPoll.compareAndSet(true, false)) {
+					listeners.remove(queue);
+					throw new SQLException("An I/O error occurred while sending to the backend");
+				}
+				String json = queue.poll(invocation.<Integer>getArgument(0), TimeUnit.MILLISECONDS);
+				if (json == null) {
+					return null;
+				}
+				PGNotification notification = mock(PGNotification.class);
+				when(notification.getParameter()).thenReturn(json);
+				return new PGNotification[]{notification};
+			});
+			return connection;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.dto.webSocketDTOs.UserPresence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class PresenceServiceTests {
+
+	private static final long DEBOUNCE_MS = 200;
+
+	private final ContactCache contactCache = mock(ContactCache.class);
+	private final BroadcastSerializer broadcastSerializer = mock(BroadcastSerializer.class);
+	private final PresenceService presenceService =
+			new PresenceService(new ChatPresenceRegistry(), contactCache, broadcastSerializer);
+
+	@BeforeEach
+	void start() {
+		when(contactCache.getContacts("alice")).thenReturn(Set.of("bob"));
+		ReflectionTestUtils.setField(presenceService, "offlineDebounceMs", DEBOUNCE_MS);
+		presenceService.start();
+	}
+
+	@AfterEach
+	void stop() {
+		presenceService.stop();
+	}
+
+	@Test
+	void reconnectInsideTheWindowSuppressesBothEvents() {
+		presenceService.sessionConnected("alice", "s1");
+		assertThat(published()).containsExactly(PresenceService.ONLINE);
+		clearInvocations(broadcastSerializer);
+
+		presenceService.sessionDisconnected("alice", "s1");
+		presenceService.sessionConnected("alice", "s2");
+
+		verify(broadcastSerializer, after(3 * DEBOUNCE_MS).never()).serialize(any());
+		assertThat(presenceService.getStatus("alice")).isEqualTo(PresenceService.ONLINE);
+	}
+
+	@Test
+	void realDisconnectPublishesOfflineOnce() {
+		presenceService.sessionConnected("alice", "s1");
+		clearInvocations(broadcastSerializer);
+
+		presenceService.sessionDisconnected("alice", "s1");
+
+		verify(broadcastSerializer, after(3 * DEBOUNCE_MS).times(1)).serialize(any());
+		assertThat(published()).containsExactly(PresenceService.OFFLINE);
+	}
+
+	@Test
+	void flappingConnectionStillPublishesOneOffline() {
+		presenceService.sessionConnected("alice", "s0");
+		clearInvocations(broadcastSerializer);
+
+		for (int i = 0; i < 50; i++) {
+			presenceService.sessionDisconnected("alice", "s" + i);
+			presenceService.sessionConnected("alice", "s" + (i + 1));
+		}
+		presenceService.sessionDisconnected("alice", "s50");
+
+		verify(broadcastSerializer, after(3 * DEBOUNCE_MS).times(1)).serialize(any());
+		assertThat(published()).containsExactly(PresenceService.OFFLINE);
+
+		// Nothing is left pending, so coming back is announced again
+		clearInvocations(broadcastSerializer);
+		presenceService.sessionConnected("alice", "s51");
+		assertThat(published()).containsExactly(PresenceService.ONLINE);
+	}
+
+	private List<String> published() {
+		ArgumentCaptor<Object> presence = ArgumentCaptor.forClass(Object.class);
+		verify(broadcastSerializer, atLeast(0)).serialize(presence.capture());
+		return presence.getAllValues().stream()
+				.map(payload -> ((UserPresence) payload).getStatus())
+				.toList();
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.exotech.urchat.service;
+
+import com.exotech.urchat.model.ChatInboxEntry;
+import com.exotech.urchat.model.ChatRoom;
+import com.exotech.urchat.model.Message;
+import com.exotech.urchat.model.User;
+import com.exotech.urchat.repository.ChatInboxRepo;
+import com.exotech.urchat.repository.ChatRoomRepo;
+import com.exotech.urchat.repository.MessageRepo;
+import com.exotech.urchat.repository.UserRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Postgres mode with lower-case identifiers, so native SQL runs unchanged
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:read-cursors;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.auto_quote_keyword=true",
+		"spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ReadCursorService.class, ChatActivityAggregator.class})
+class ReadCursorServiceTests {
+
+	private static final LocalDateTime NOON = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+	@Autowired
+	private ReadCursorService readCursorService;
+	@Autowired
+	private ChatInboxRepo chatInboxRepo;
+	@Autowired
+	private ChatRoomRepo chatRoomRepo;
+	@Autowired
+	private MessageRepo messageRepo;
+	@Autowired
+	private UserRepo userRepo;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private User alice;
+	private ChatRoom chat;
+
+	@BeforeEach
+	void createChat() {
+		alice = userRepo.save(user("alice"));
+		User bob = userRepo.save(user("bob"));
+		chat = new ChatRoom();
+		chat.setChatId("dm1");
+		chat.setIsGroup(false);
+		chat.getParticipants().add(alice);
+		chat.getParticipants().add(bob);
+		chat = chatRoomRepo.save(chat);
+		chatInboxRepo.save(ChatInboxEntry.builder().username("alice").chatId("dm1").build());
+		chatInboxRepo.save(ChatInboxEntry.builder().username("bob").chatId("dm1").build());
+	}
+
+	@Test
+	void cursorFollowsTimestampsNotIds() {
+		// Ids handed out by two nodes: the newest message has the lowest id
+		Message newest = send(NOON.plusMinutes(2));
+		Message oldest = send(NOON);
+		Message middle = send(NOON.plusMinutes(1));
+		assertThat(newest.getMessageId()).isLessThan(oldest.getMessageId());
+
+		readCursorService.markRead("bob", "dm1", middle.getMessageId());
+		readCursorService.flushUser("bob");
+		assertThat(bobRow().getLastReadMessageId()).isEqualTo(middle.getMessageId());
+		assertThat(bobRow().getUnreadCount()).isEqualTo(1);
+
+		// A lower id that is newer still moves the cursor forward
+		readCursorService.markRead("bob", "dm1", newest.getMessageId());
+		readCursorService.flushUser("bob");
+		assertThat(bobRow().getLastReadMessageId()).isEqualTo(newest.getMessageId());
+		assertThat(bobRow().getLastReadAt()).isEqualTo(NOON.plusMinutes(2));
+		assertThat(bobRow().getUnreadCount()).isZero();
+
+		// A late receipt for an older message never moves it back
+		readCursorService.markRead("bob", "dm1", oldest.getMessageId());
+		readCursorService.flushUser("bob");
+		assertThat(bobRow().getLastReadMessageId()).isEqualTo(newest.getMessageId());
+		assertThat(bobRow().getUnreadCount()).isZero();
+	}
+
+	@Test
+	void receiptsBufferedTogetherKeepTheNewest() {
+		Message newest = send(NOON.plusMinutes(2));
+		Message oldest = send(NOON);
+		Message middle = send(NOON.plusMinutes(1));
+
+		readCursorService.markRead("bob", "dm1", middle.getMessageId());
+		readCursorService.markRead("bob", "dm1", newest.getMessageId());
+		readCursorService.markRead("bob", "dm1", oldest.getMessageId());
+		readCursorService.flush();
+
+		assertThat(bobRow().getLastReadMessageId()).isEqualTo(newest.getMessageId());
+		assertThat(bobRow().getUnreadCount()).isZero();
+	}
+
+	@Test
+	void deletedUnreadMessagesAreRecounted() {
+		Message first = send(NOON);
+		send(NOON.plusMinutes(1));
+		readCursorService.recountUnread("dm1");
+		assertThat(bobRow().getUnreadCount()).isEqualTo(2);
+		// Own messages never count
+		assertThat(row("alice").getUnreadCount()).isZero();
+
+		messageRepo.deleteById(first.getMessageId());
+		messageRepo.flush();
+		readCursorService.recountUnread("dm1");
+
+		assertThat(bobRow().getUnreadCount()).isEqualTo(1);
+	}
+
+	private Message send(LocalDateTime timestamp) {
+		Message message = new Message();
+		message.setMessageContent("at " + timestamp);
+		message.setSender(alice);
+		message.setChatRoom(chat);
+		message = messageRepo.saveAndFlush(message);
+		// The creation timestamp is always "now" on insert
+		jdbcTemplate.update("UPDATE messages SET timestamp = ? WHERE message_id = ?", timestamp, message.getMessageId());
+		return message;
+	}
+
+	private ChatInboxEntry bobRow() {
+		return row("bob");
+	}
+
+	private ChatInboxEntry row(String username) {
+		entityManager.clear();
+		return chatInboxRepo.findByChatId("dm1").stream()
+				.filter(entry -> entry.getUsername().equals(username))
+				.findFirst()
+				.orElseThrow();
+	}
+
+	private User user(String username) {
+		return User.builder()
+				.username(username)
+				.email(username + "@example.com")
+				.password("secret")
+				.fullName(username)
+				.build();
+	}
+
+}